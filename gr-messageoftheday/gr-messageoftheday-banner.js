@@ -15,6 +15,7 @@
  * limitations under the License.
  */
 import {htmlTemplate} from './gr-messageoftheday-banner_html.js';
+import {getMessageWatcher} from './gr-messageoftheday-watcher.js';
 
 class GrMessageOfTheDayBanner extends Polymer.Element {
   static get is() {
@@ -37,17 +38,27 @@ class GrMessageOfTheDayBanner extends Polymer.Element {
 
   connectedCallback() {
     super.connectedCallback();
+    this._unsubscribe = getMessageWatcher(this.plugin).subscribe(
+        message => this._showMessage(message));
+  }
+
+  disconnectedCallback() {
+    if (this._unsubscribe) {
+      this._unsubscribe();
+      this._unsubscribe = null;
+    }
+    super.disconnectedCallback();
+  }
 
-    this.plugin.restApi()
-      .get(`/config/server/${this.plugin.getPluginName()}~message`)
-      .then(message => {
-        if (!message || !message.html) {
-          return;
-        }
-        this._message = message;
-        this._isHidden();
-        this.$.message.innerHTML = this._message.html;
-      });
+  _showMessage(message) {
+    if (!message || !message.html) {
+      this._message = null;
+      this._hidden = true;
+      return;
+    }
+    this._message = message;
+    this._isHidden();
+    this.$.message.innerHTML = this._message.html;
   }
 
   _handleDismissMessage() {
@@ -0,0 +1,397 @@
+/**
+ * @license
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+const JSON_PREFIX = ')]}\'';
+const RETRY_DELAY_MS = 30 * 1000;
+const STORAGE_KEY = 'messageoftheday';
+const CHANNEL_NAME = 'messageoftheday';
+const LOCK_NAME = 'messageoftheday-watch';
+// Keep watching for a moment after the last banner is removed, so that a
+// banner that is re-mounted by the app doesn't start a new watch.
+const STOP_DELAY_MS = 1000;
+// Dispatched on the document by the editor, with the message shown after
+// saving.
+const SAVED_EVENT = 'messageoftheday-saved';
+
+/**
+ * Watches the server for the shown message on behalf of all tabs of the
+ * browser.
+ *
+ * Only one tab, the one holding the watch lock, talks to the server. It stores
+ * the latest server wide message together with its ETag in localStorage and
+ * broadcasts it to the other tabs. Other tabs show the stored message right
+ * away and take over watching when the watching tab is closed. Within a tab,
+ * all banners share the same watcher.
+ *
+ * The stored message is shown without asking the server until the max-age it
+ * was sent with expires, e.g. when a new tab is opened. Once that has passed,
+ * the message is only shown after the server sent it again.
+ *
+ * On project and change pages the message of the project is shown instead.
+ * Tabs tell the watching tab which project they show. It watches the message
+ * of each of these projects as well, and broadcasts it like the server wide
+ * message.
+ */
+class MessageWatcher {
+  constructor(url) {
+    this._url = url;
+    this._listeners = new Set();
+    // The known messages by project, null for the server wide message.
+    this._states = new Map();
+    const state = this._load();
+    if (state) {
+      this._states.set(null, state);
+    }
+    this._tab = Math.random().toString(36).substring(2);
+    this._channel = null;
+    this._abortController = null;
+    this._stopTimer = null;
+    this._project = null;
+    // Only set while this tab holds the watch lock.
+    this._leaderSignal = null;
+    this._tabProjects = new Map();
+    this._watches = new Map();
+    document.addEventListener(
+        SAVED_EVENT, event => this._showSaved(event.detail.message));
+    // Closed tabs no longer need the message of their project, tabs restored
+    // from the back-forward cache need it again.
+    window.addEventListener('pagehide', () => this._announce(null));
+    window.addEventListener('pageshow', event => {
+      if (event.persisted) {
+        this._announce(this._project);
+      }
+    });
+  }
+
+  /**
+   * Starts watching, if not watching already. Called when the plugin is
+   * installed, so that the message is requested while the app boots.
+   */
+  start() {
+    if (!this._abortController) {
+      this._start();
+    }
+  }
+
+  /**
+   * Calls the listener with the current message and whenever it changes.
+   * Returns a function that stops calling the listener.
+   */
+  subscribe(listener) {
+    this._listeners.add(listener);
+    const message = this._message();
+    if (message !== undefined) {
+      listener(message);
+    }
+    if (this._stopTimer) {
+      clearTimeout(this._stopTimer);
+      this._stopTimer = null;
+    } else {
+      this.start();
+    }
+    return () => {
+      this._listeners.delete(listener);
+      if (this._listeners.size === 0) {
+        this._stopTimer = setTimeout(() => this._stop(), STOP_DELAY_MS);
+      }
+    };
+  }
+
+  /**
+   * Sets the project of the current page, null if the page doesn't belong to
+   * a project.
+   */
+  setProject(project) {
+    if (project === this._project) {
+      return;
+    }
+    if (!this._leaderSignal) {
+      // The message of the previous project may change unnoticed from now on.
+      this._states.delete(this._project);
+    }
+    this._project = project;
+    this._notify();
+    this._announce(project);
+  }
+
+  _start() {
+    this._abortController = new AbortController();
+    const signal = this._abortController.signal;
+    if (typeof BroadcastChannel === 'undefined' || !navigator.locks) {
+      // Without cross-tab coordination every tab watches on its own.
+      this._lead(signal);
+      return;
+    }
+    this._channel = new BroadcastChannel(CHANNEL_NAME);
+    this._channel.onmessage = event => this._receive(event.data);
+    this._announce(this._project);
+    navigator.locks
+      .request(LOCK_NAME, {signal}, () => new Promise(resolve => {
+        // Hold the lock, and keep watching, until this tab stops watching.
+        signal.addEventListener('abort', resolve);
+        this._lead(signal);
+      }))
+      .catch(() => {});
+  }
+
+  _stop() {
+    this._stopTimer = null;
+    this._announce(null);
+    this._abortController.abort();
+    this._abortController = null;
+    if (this._channel) {
+      this._channel.close();
+      this._channel = null;
+    }
+  }
+
+  /** Watches on behalf of all tabs, until the signal is aborted. */
+  _lead(signal) {
+    this._leaderSignal = signal;
+    this._tabProjects = new Map();
+    if (this._project) {
+      this._tabProjects.set(this._tab, this._project);
+    }
+    signal.addEventListener('abort', () => {
+      this._leaderSignal = null;
+      for (const controller of this._watches.values()) {
+        controller.abort();
+      }
+      this._watches.clear();
+    });
+    if (this._channel) {
+      // Ask the other tabs which projects they show.
+      this._channel.postMessage({type: 'leader'});
+    }
+    this._updateWatches();
+  }
+
+  /** Tells the watching tab which project this tab shows. */
+  _announce(project) {
+    if (this._leaderSignal) {
+      this._setTabProject(this._tab, project);
+    } else if (this._channel) {
+      this._channel.postMessage({type: 'project', tab: this._tab, project});
+    }
+  }
+
+  _receive(data) {
+    switch (data.type) {
+      case 'state':
+        this._update(data.project, data.state, false);
+        break;
+      case 'project':
+        if (this._leaderSignal) {
+          this._setTabProject(data.tab, data.project);
+        }
+        break;
+      case 'leader':
+        this._announce(this._project);
+        break;
+    }
+  }
+
+  _setTabProject(tab, project) {
+    if (project) {
+      this._tabProjects.set(tab, project);
+    } else {
+      this._tabProjects.delete(tab);
+    }
+    // Tabs opening a project that is already watched get its message right
+    // away.
+    const state = project && this._states.get(project);
+    if (state && this._channel) {
+      this._channel.postMessage({type: 'state', project, state});
+    }
+    this._updateWatches();
+  }
+
+  /**
+   * Watches the server wide message and the message of every project shown
+   * in a tab, each of them once.
+   */
+  _updateWatches() {
+    const projects = new Set([null, ...this._tabProjects.values()]);
+    for (const [project, controller] of this._watches) {
+      if (!projects.has(project)) {
+        controller.abort();
+        this._watches.delete(project);
+        this._states.delete(project);
+      }
+    }
+    for (const project of projects) {
+      if (!this._watches.has(project)) {
+        const controller = new AbortController();
+        this._watches.set(project, controller);
+        const state = this._states.get(project);
+        this._watch(project, state ? state.eTag : undefined, controller.signal);
+      }
+    }
+  }
+
+  _watch(project, eTag, signal) {
+    if (signal.aborted) {
+      return;
+    }
+    const url = project
+      ? `${this._url}?project=${encodeURIComponent(project)}`
+      : this._url;
+    const headers = eTag ? {'If-None-Match': eTag} : {};
+    fetch(url, {headers, cache: 'no-store', credentials: 'same-origin', signal})
+      .then(response => {
+        if (response.status === 304) {
+          // Servers which can't hold the request ask to wait before watching
+          // again.
+          const retryAfter = Number(response.headers.get('Retry-After')) * 1000;
+          if (retryAfter > 0) {
+            setTimeout(() => this._watch(project, eTag, signal), retryAfter);
+            return;
+          }
+          return this._watch(project, eTag, signal);
+        }
+        if (response.status === 404 && project) {
+          // The project isn't visible, its tabs show the server wide message.
+          return;
+        }
+        if (!response.ok) {
+          throw new Error(`watching message failed: ${response.status}`);
+        }
+        const newETag = response.headers.get('ETag');
+        const staleAt = Date.now() + maxAgeMillis(response);
+        return response.text().then(text => {
+          const message = text ? JSON.parse(text.replace(JSON_PREFIX, '')) : null;
+          this._update(project, {eTag: newETag, message, staleAt}, true);
+          this._watch(project, newETag, signal);
+        });
+      })
+      .catch(() => {
+        if (!signal.aborted) {
+          setTimeout(() => this._watch(project, eTag, signal), RETRY_DELAY_MS);
+        }
+      });
+  }
+
+  _update(project, state, fromServer) {
+    if (!fromServer && project !== null && project !== this._project) {
+      // Broadcast for another tab.
+      return;
+    }
+    const known = this._states.get(project);
+    if (known && known.eTag === state.eTag) {
+      return;
+    }
+    this._states.set(project, state);
+    if (fromServer) {
+      if (project === null) {
+        this._store(state);
+      }
+      if (this._channel) {
+        this._channel.postMessage({type: 'state', project, state});
+      }
+    }
+    if (project === null || project === this._project) {
+      this._notify();
+    }
+  }
+
+  /**
+   * Returns the message to show on the current page, undefined if it isn't
+   * known yet. Until the message of the project is known, the server wide
+   * message is shown.
+   */
+  _message() {
+    const state = (this._project && this._states.get(this._project))
+      || this._states.get(null);
+    return state ? state.message : undefined;
+  }
+
+  _notify() {
+    const message = this._message();
+    if (message === undefined) {
+      return;
+    }
+    for (const listener of this._listeners) {
+      listener(message);
+    }
+  }
+
+  _showSaved(message) {
+    if (this._project) {
+      // The saved message is the server wide one, the project may show
+      // another. Its watch brings the message of the project if it changed.
+      return;
+    }
+    // Show the saved message right away. The watch brings the new ETag, to
+    // this tab as well as to the others, and stores it.
+    for (const listener of this._listeners) {
+      listener(message);
+    }
+  }
+
+  _load() {
+    let state;
+    try {
+      state = JSON.parse(localStorage.getItem(STORAGE_KEY));
+    } catch (e) {
+      return null;
+    }
+    return state && state.staleAt > Date.now() ? state : null;
+  }
+
+  _store(state) {
+    try {
+      localStorage.setItem(STORAGE_KEY, JSON.stringify(state));
+    } catch (e) {
+      // Storage may be full or disabled, other tabs still get the broadcast.
+    }
+  }
+}
+
+/**
+ * Returns the project of the page with the given path, null if the page
+ * doesn't belong to a project.
+ */
+export function projectOfPath(path) {
+  const base = window.CANONICAL_PATH || '';
+  if (base && path.startsWith(base)) {
+    path = path.substring(base.length);
+  }
+  const match = /^\/(?:admin\/repos\/([^,]+)|c\/(.+)\/\+\/)/.exec(path);
+  if (!match) {
+    return null;
+  }
+  try {
+    return decodeURIComponent(match[1] || match[2]);
+  } catch (e) {
+    return null;
+  }
+}
+
+function maxAgeMillis(response) {
+  const match = /max-age=(\d+)/.exec(response.headers.get('Cache-Control') || '');
+  return match ? Number(match[1]) * 1000 : 0;
+}
+
+let watcher;
+
+/** Returns the message watcher of this tab. */
+export function getMessageWatcher(plugin) {
+  if (!watcher) {
+    watcher = new MessageWatcher(plugin.url('/watch'));
+  }
+  return watcher;
+}
@@ -16,9 +16,84 @@
  */
 
 import './gr-messageoftheday-banner.js';
-import './gr-messageoftheday-edit.js';
+import {getMessageWatcher, projectOfPath} from './gr-messageoftheday-watcher.js';
+
+const CAPABILITY = 'messageoftheday-updateBanner';
+const CAPABILITY_STORAGE_KEY = 'messageoftheday-can-update';
+// For how long the capability is taken from the storage. Granted or revoked
+// capabilities take effect after at most that long.
+const CAPABILITY_TTL_MS = 10 * 60 * 1000;
+
+/**
+ * Resolves to whether the user can update the banner.
+ *
+ * Anonymous users are never asked for. For signed in users the answer is kept
+ * in the local storage, shared by all tabs, so that it is requested at most
+ * once every few minutes per account rather than on every page load.
+ */
+function canUpdateBanner(plugin) {
+  const restApi = plugin.restApi();
+  return restApi.getLoggedIn().then(loggedIn => {
+    if (!loggedIn) {
+      return false;
+    }
+    return restApi.getAccount().then(account => {
+      const key = `${CAPABILITY_STORAGE_KEY}-${account._account_id}`;
+      const stored = readStored(key);
+      if (stored !== null) {
+        return stored;
+      }
+      return restApi.get(`/accounts/self/capabilities?q=${CAPABILITY}`)
+        .then(response => {
+          const canUpdate = !!response && response[CAPABILITY] === true;
+          writeStored(key, canUpdate);
+          return canUpdate;
+        });
+    });
+  });
+}
+
+/** Returns the stored capability, null if it isn't stored or has expired. */
+function readStored(key) {
+  let stored;
+  try {
+    stored = JSON.parse(localStorage.getItem(key));
+  } catch (e) {
+    return null;
+  }
+  if (!stored || !(stored.expiresAt > Date.now())) {
+    return null;
+  }
+  return stored.canUpdate === true;
+}
+
+function writeStored(key, canUpdate) {
+  try {
+    localStorage.setItem(
+        key, JSON.stringify({canUpdate, expiresAt: Date.now() + CAPABILITY_TTL_MS}));
+  } catch (e) {
+    // Without storage the capability is requested on every page load.
+  }
+}
 
 Gerrit.install(plugin => {
-  plugin.registerCustomComponent('header-top-right', 'gr-messageoftheday-edit');
+  const watcher = getMessageWatcher(plugin);
+  watcher.setProject(projectOfPath(window.location.pathname));
+  watcher.start();
+  // Show the message of the project on project and change pages.
+  plugin.on('history', path => watcher.setProject(projectOfPath(path)));
+  plugin.on('showchange', change => watcher.setProject(change.project));
   plugin.registerCustomComponent('banner', 'gr-messageoftheday-banner');
+  canUpdateBanner(plugin).then(canUpdate => {
+    if (!canUpdate) {
+      return;
+    }
+    // The editor isn't part of the plugin bundle, so that only users who can
+    // update the banner download it.
+    return import(plugin.url('/static/gr-messageoftheday-edit.js')).then(() => {
+      plugin.registerCustomComponent('header-top-right', 'gr-messageoftheday-edit');
+    });
+  }).catch(error => {
+    console.error('Error loading the banner editor:', error);
+  });
 });
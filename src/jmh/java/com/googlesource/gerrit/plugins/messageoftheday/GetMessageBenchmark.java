@@ -0,0 +1,205 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_EXPIRES_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_ID;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.CONFIG_FILE;
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.MASTER;
+import static com.googlesource.gerrit.plugins.messageoftheday.TestMessageStores.IDENT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of serving the message through {@link GetMessage}, with several threads
+ * requesting it at once.
+ *
+ * <p>The warm benchmark serves the message from a running plugin, which loaded and compiled it
+ * already. The cold benchmark serves it from a new instance of the plugin, so that every request
+ * loads the message from the store and compiles it, as happens after it was modified. The Git
+ * based store reads from an in-memory repository, so that it measures the plugin rather than the
+ * disk.
+ *
+ * <p>Run with {@code -prof gc} to also measure the allocation rate, see the build documentation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class GetMessageBenchmark {
+  private static final String PLUGIN_NAME = "messageoftheday";
+  private static final String MESSAGE_ID = "benchmark";
+  private static final String EXPIRES_AT = "29991231:2359";
+  private static final long MAX_MESSAGE_SIZE = 2 * 1024 * 1024;
+  private static final ConfigResource RESOURCE = new ConfigResource();
+
+  @Param({"file", "git"})
+  public String backend;
+
+  @Param({"100", "10000", "1000000"})
+  public int messageSize;
+
+  private Path tempDir;
+  private Repository configRepo;
+  private WorkQueue workQueue;
+  private PluginConfigFactory pluginConfigFactory;
+  private GetMessage warmGetMessage;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    workQueue = mock(WorkQueue.class);
+    pluginConfigFactory = mock(PluginConfigFactory.class);
+    when(pluginConfigFactory.getFromGerritConfig(anyString()))
+        .thenReturn(PluginConfig.createFromGerritConfig(PLUGIN_NAME, new Config()));
+
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, KEY_ID, MESSAGE_ID);
+    config.setString(SECTION_MESSAGE, null, KEY_EXPIRES_AT, EXPIRES_AT);
+    String html = "x".repeat(messageSize);
+    switch (backend) {
+      case "file" -> {
+        tempDir = Files.createTempDirectory("messageoftheday-benchmark");
+        Files.createDirectory(tempDir.resolve("data"));
+        newFileBasedMessageStore(new MessageMetrics(new DisabledMetricMaker()))
+            .saveConfiguredMessage(new ConfiguredMessage(config, html));
+      }
+      case "git" -> {
+        configRepo = new InMemoryRepository(new DfsRepositoryDescription(PLUGIN_NAME));
+        commit(config, html);
+      }
+      default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+
+    warmGetMessage = newGetMessage();
+    if (warmGetMessage.apply(RESOURCE).statusCode() != 200) {
+      throw new IllegalStateException("The message isn't shown");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (tempDir != null) {
+      MoreFiles.deleteRecursively(tempDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+    if (configRepo != null) {
+      configRepo.close();
+    }
+  }
+
+  @Benchmark
+  public Response<?> warmCache() {
+    return warmGetMessage.apply(RESOURCE);
+  }
+
+  @Benchmark
+  public Response<?> coldCache() throws IOException {
+    return newGetMessage().apply(RESOURCE);
+  }
+
+  private GetMessage newGetMessage() throws IOException {
+    MessageMetrics metrics = new MessageMetrics(new DisabledMetricMaker());
+    MessageStore store =
+        configRepo != null
+            ? TestMessageStores.gitBased(configRepo, MAX_MESSAGE_SIZE, metrics)
+            : newFileBasedMessageStore(metrics);
+    CompiledMessageCache cache = new CompiledMessageCache(store, metrics);
+    MessageActivationTimer activationTimer =
+        new MessageActivationTimer(cache, workQueue, metrics, new MessageWatchers());
+    return new GetMessage(cache, activationTimer, metrics, pluginConfigFactory, PLUGIN_NAME);
+  }
+
+  private FileBasedMessageStore newFileBasedMessageStore(MessageMetrics metrics) {
+    return TestMessageStores.fileBased(
+        tempDir.resolve("messageoftheday.config").toFile(),
+        tempDir.resolve("data"),
+        MAX_MESSAGE_SIZE,
+        0,
+        metrics);
+  }
+
+  private void commit(Config config, String html) throws IOException {
+    try (ObjectInserter inserter = configRepo.newObjectInserter()) {
+      // Tree entries must be sorted by name.
+      TreeFormatter tree = new TreeFormatter();
+      tree.append(
+          MESSAGE_ID + ".html",
+          FileMode.REGULAR_FILE,
+          inserter.insert(Constants.OBJ_BLOB, html.getBytes(UTF_8)));
+      tree.append(
+          CONFIG_FILE,
+          FileMode.REGULAR_FILE,
+          inserter.insert(Constants.OBJ_BLOB, config.toText().getBytes(UTF_8)));
+
+      CommitBuilder commit = new CommitBuilder();
+      commit.setTreeId(inserter.insert(tree));
+      commit.setAuthor(IDENT);
+      commit.setCommitter(IDENT);
+      commit.setMessage("Add benchmark message\n");
+      ObjectId commitId = inserter.insert(commit);
+      inserter.flush();
+
+      RefUpdate ru = configRepo.updateRef(MASTER);
+      ru.setNewObjectId(commitId);
+      RefUpdate.Result result = ru.update();
+      if (result != RefUpdate.Result.NEW) {
+        throw new IOException("Couldn't create " + MASTER + ": " + result);
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_EXPIRES_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_ID;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+
+import com.google.common.base.Strings;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of reading the message from the store while it is saved.
+ *
+ * <p>4 threads read the message while another thread saves it over and over. JMH reports the
+ * percentiles of the latency of both, the 99th percentile of reads must stay below 2 s, see the
+ * build documentation. The consistency of the stores under concurrent reads and saves is checked
+ * by {@code MessageStoreStressTest}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Group)
+public class ReadWhileSavingBenchmark {
+  private static final String MESSAGE_ID = "benchmark";
+  private static final String EXPIRES_AT = "29991231:2359";
+  private static final int CONTENT_SIZE = 16 * 1024;
+  private static final long MAX_MESSAGE_SIZE = 2 * CONTENT_SIZE;
+
+  @Param({"file", "git"})
+  public String backend;
+
+  private Path tempDir;
+  private Repository configRepo;
+  private MessageStore store;
+  private int revision;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    switch (backend) {
+      case "file" -> {
+        tempDir = Files.createTempDirectory("messageoftheday-benchmark");
+        store =
+            TestMessageStores.fileBased(
+                tempDir.resolve("messageoftheday.config").toFile(),
+                Files.createDirectory(tempDir.resolve("data")),
+                MAX_MESSAGE_SIZE);
+      }
+      case "git" -> {
+        configRepo = new InMemoryRepository(new DfsRepositoryDescription("messageoftheday"));
+        store = TestMessageStores.gitBased(configRepo, MAX_MESSAGE_SIZE);
+      }
+      default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+    store.saveConfiguredMessage(message(revision));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (tempDir != null) {
+      MoreFiles.deleteRecursively(tempDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+    if (configRepo != null) {
+      configRepo.close();
+    }
+  }
+
+  @Benchmark
+  @Group("readWhileSaving")
+  @GroupThreads(4)
+  public ConfiguredMessage read() throws MessageStoreException {
+    return store.getConfiguredMessage();
+  }
+
+  @Benchmark
+  @Group("readWhileSaving")
+  @GroupThreads(1)
+  public void save() throws MessageStoreException {
+    // Only this thread saves, so that saves never conflict.
+    store.saveConfiguredMessage(message(++revision));
+  }
+
+  private static ConfiguredMessage message(int revision) {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, KEY_ID, MESSAGE_ID);
+    config.setString(SECTION_MESSAGE, null, KEY_EXPIRES_AT, EXPIRES_AT);
+    String content = "<p>Revision " + revision + "</p>";
+    return new ConfiguredMessage(config, Strings.padEnd(content, CONTENT_SIZE, ' '));
+  }
+}
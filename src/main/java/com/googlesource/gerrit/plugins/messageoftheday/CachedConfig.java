@@ -14,11 +14,26 @@
 
 package com.googlesource.gerrit.plugins.messageoftheday;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.common.Nullable;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectId;
 
-public record CachedConfig(Config config, String message, ObjectId commitId) {
+/**
+ * The message configuration as read from a commit of the config repository.
+ *
+ * <p>The content IDs of the messages are the IDs of the blobs holding them.
+ *
+ * @param configBlobId ID of the blob holding the config file
+ */
+public record CachedConfig(
+    ConfiguredMessage message, ObjectId commitId, @Nullable ObjectId configBlobId) {
   public static CachedConfig empty() {
-    return new CachedConfig(null, null, null);
+    return new CachedConfig(new ConfiguredMessage(new Config(), ImmutableMap.of()), null, null);
+  }
+
+  /** Returns the same content, as found in another commit. */
+  CachedConfig withCommitId(ObjectId commitId) {
+    return new CachedConfig(message, commitId, configBlobId);
   }
 }
@@ -0,0 +1,173 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.googlesource.gerrit.plugins.messageoftheday.GetMessage.DATE_FORMAT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.Hashing;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.restapi.BinaryResult;
+import com.google.gerrit.json.OutputFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A message of the day in its ready-to-serve form.
+ *
+ * <p>The configured dates are parsed and formatted once, and the REST response is serialized once,
+ * so that serving the message only requires comparing the current time against the activation
+ * window.
+ */
+public final class CompiledMessage {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final DateTimeFormatter REST_RESPONSE_FORMAT =
+      DateTimeFormatter.ofPattern("MMM d, yyyy h:mm:ss a", Locale.ENGLISH);
+  private static final String JSON_TYPE = "application/json";
+  private static final byte[] JSON_MAGIC = ")]}'\n".getBytes(UTF_8);
+
+  /**
+   * Compiles a message.
+   *
+   * @param id the ID of the message
+   * @param startsAtValue the configured start of the activation window, the message is always
+   *     started if not set or invalid
+   * @param expiresAtValue the configured end of the activation window
+   * @param content the content of the message
+   * @param version the version of the configuration of all messages
+   * @return the compiled message, empty if the configuration is invalid
+   */
+  public static Optional<CompiledMessage> compile(
+      String id,
+      @Nullable String startsAtValue,
+      @Nullable String expiresAtValue,
+      MessageContent content,
+      String version) {
+    LocalDateTime expiresAt;
+    try {
+      expiresAt = LocalDateTime.parse(expiresAtValue, DATE_FORMAT);
+    } catch (DateTimeParseException | NullPointerException e) {
+      logger.atWarning().log("expiresAt of message %s not defined, it will not be shown", id);
+      return Optional.empty();
+    }
+
+    ZoneId zone = ZoneId.systemDefault();
+    // A message without a start is shown from the beginning of time. Stamping it with the time it
+    // is compiled at would make it differ between servers and recompilations.
+    LocalDateTime startsAt = null;
+    if (!Strings.isNullOrEmpty(startsAtValue)) {
+      try {
+        startsAt = LocalDateTime.parse(startsAtValue, DATE_FORMAT);
+      } catch (DateTimeParseException e) {
+        logger.atWarning().log("startsAt of message %s is invalid, it is shown right away", id);
+      }
+    }
+
+    MessageOfTheDayInfo motd = new MessageOfTheDayInfo();
+    motd.html = content.html();
+    motd.id = id;
+    motd.contentId = content.contentId();
+    motd.startsAt = startsAt != null ? startsAt.format(REST_RESPONSE_FORMAT) : null;
+    motd.expiresAt = expiresAt.format(REST_RESPONSE_FORMAT);
+    motd.version = version;
+
+    return Optional.of(
+        new CompiledMessage(
+            motd,
+            startsAt != null ? startsAt.atZone(zone).toInstant().toEpochMilli() : Long.MIN_VALUE,
+            expiresAt.atZone(zone).toInstant().toEpochMilli()));
+  }
+
+  private final MessageOfTheDayInfo info;
+  private final long startsAtMillis;
+  private final long expiresAtMillis;
+  private final byte[] json;
+  private final int size;
+
+  private CompiledMessage(MessageOfTheDayInfo info, long startsAtMillis, long expiresAtMillis) {
+    this.info = info;
+    this.startsAtMillis = startsAtMillis;
+    this.expiresAtMillis = expiresAtMillis;
+    this.json = serialize(info);
+    this.size = info.html.getBytes(UTF_8).length;
+  }
+
+  /** Whether the message is to be displayed at the given time. */
+  public boolean isActive(long nowMillis) {
+    return startsAtMillis <= nowMillis && nowMillis <= expiresAtMillis;
+  }
+
+  public String id() {
+    return info.id;
+  }
+
+  public String contentId() {
+    return info.contentId;
+  }
+
+  /** Returns the start of the activation window, {@link Long#MIN_VALUE} if it has no start. */
+  public long startsAtMillis() {
+    return startsAtMillis;
+  }
+
+  public long expiresAtMillis() {
+    return expiresAtMillis;
+  }
+
+  /** Returns the size of the content of the message in bytes. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the strong entity tag of the message as shown during the segment with the given
+   * boundaries. It changes whenever the ID, the content or the activation window of the message
+   * changes, or the segment, which bounds the {@code max-age} of the response. Modifications of
+   * other messages don't change it, unless they split the segment.
+   */
+  public String eTag(long segmentFrom, long segmentUntil) {
+    return "\""
+        + info.contentId
+        + "-"
+        + Hashing.murmur3_32_fixed()
+            .newHasher()
+            .putString(info.id, UTF_8)
+            .putLong(startsAtMillis)
+            .putLong(expiresAtMillis)
+            .putLong(segmentFrom)
+            .putLong(segmentUntil)
+            .hash()
+        + "\"";
+  }
+
+  /** Returns the serialized {@link MessageOfTheDayInfo}, as expected by REST API clients. */
+  public BinaryResult toBinaryResult() {
+    return BinaryResult.create(json).setContentType(JSON_TYPE).setCharacterEncoding(UTF_8);
+  }
+
+  private static byte[] serialize(MessageOfTheDayInfo info) {
+    byte[] body = OutputFormat.JSON_COMPACT.newGson().toJson(info).getBytes(UTF_8);
+    byte[] result = new byte[JSON_MAGIC.length + body.length];
+    System.arraycopy(JSON_MAGIC, 0, result, 0, JSON_MAGIC.length);
+    System.arraycopy(body, 0, result, JSON_MAGIC.length, body.length);
+    return result;
+  }
+}
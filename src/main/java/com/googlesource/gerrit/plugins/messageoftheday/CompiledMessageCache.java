@@ -0,0 +1,76 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the {@link MessageSchedule} for the messages currently held by the {@link MessageStore}.
+ *
+ * <p>The message stores cache their content and hand out the same instance for as long as the
+ * content doesn't change, so the messages are only compiled again when a new version is loaded.
+ */
+@Singleton
+public class CompiledMessageCache {
+  private final MessageStore messageStore;
+  private final MessageMetrics metrics;
+
+  private volatile Entry entry;
+
+  @Inject
+  CompiledMessageCache(MessageStore messageStore, MessageMetrics metrics) {
+    this.messageStore = messageStore;
+    this.metrics = metrics;
+  }
+
+  /** Returns the schedule of the current messages. */
+  public MessageSchedule get() throws MessageStoreException {
+    return get(false);
+  }
+
+  /**
+   * Returns the schedule of the current messages, and counts the lookup in the cache metrics.
+   *
+   * <p>Serving the message looks up the schedule more than once, e.g. for computing the entity
+   * tag, so only the lookup for the response is counted. It counts as a miss if the schedule was
+   * compiled for this request or since the last counted lookup.
+   */
+  public MessageSchedule getForRequest() throws MessageStoreException {
+    return get(true);
+  }
+
+  private MessageSchedule get(boolean count) throws MessageStoreException {
+    ConfiguredMessage configuredMessage = messageStore.getConfiguredMessage();
+    Entry current = entry;
+    if (current == null || current.source() != configuredMessage) {
+      current =
+          new Entry(
+              configuredMessage, MessageSchedule.compile(configuredMessage), new AtomicBoolean());
+      entry = current;
+    }
+    if (count) {
+      metrics.incrementCacheRequests(
+          current.counted().compareAndSet(false, true)
+              ? MessageMetrics.CacheResult.MISS
+              : MessageMetrics.CacheResult.HIT);
+    }
+    return current.schedule();
+  }
+
+  private record Entry(
+      ConfiguredMessage source, MessageSchedule schedule, AtomicBoolean counted) {}
+}
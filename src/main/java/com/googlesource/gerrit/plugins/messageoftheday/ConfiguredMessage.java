@@ -14,6 +14,296 @@
 
 package com.googlesource.gerrit.plugins.messageoftheday;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gerrit.common.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.Config;
 
-public record ConfiguredMessage(Config config, String message) {}
+/**
+ * The message configuration together with the content of the configured messages.
+ *
+ * <p>Besides the message configured in the {@code [message]} section, which is the one managed
+ * through the REST API, the config may schedule any number of messages in {@code [message
+ * "<id>"]} sections.
+ *
+ * <p>Instances are immutable and are shared by the message stores with concurrent readers. The
+ * settings of the messages are parsed when the instance is created. Modifications are made on a
+ * copy of the config, as returned by {@link #config()}, from which a new instance is created.
+ */
+public final class ConfiguredMessage {
+  static final String SECTION_MESSAGE = "message";
+  static final String KEY_ID = "id";
+  static final String KEY_STARTS_AT = "startsAt";
+  static final String KEY_EXPIRES_AT = "expiresAt";
+  static final String KEY_CONTENT_ID = "contentId";
+  static final String KEY_PROJECT = "project";
+  static final String KEY_HOST = "host";
+
+  /**
+   * The settings of a message.
+   *
+   * @param subsection the subsection configuring the message, {@code null} for the message of the
+   *     {@code [message]} section
+   * @param contentId the content ID recorded for the message by the file based store
+   * @param projects the projects the message is shown for, empty if it is shown server wide
+   * @param hosts the hosts the message is shown on, empty if it is shown on all hosts
+   */
+  public record Settings(
+      @Nullable String subsection,
+      @Nullable String startsAt,
+      @Nullable String expiresAt,
+      @Nullable String contentId,
+      ImmutableList<String> projects,
+      ImmutableList<String> hosts) {}
+
+  private final Config config;
+  private final ImmutableMap<String, MessageContent> contents;
+  private final String text;
+  @Nullable private final String id;
+  private final ImmutableMap<String, Settings> settings;
+  private final String version;
+
+  /**
+   * Creates the configured message.
+   *
+   * @param config the config, which is copied so that later modifications don't affect the
+   *     message
+   * @param contents content of the configured messages by message ID. Messages without content
+   *     file are missing.
+   */
+  public ConfiguredMessage(Config config, ImmutableMap<String, MessageContent> contents) {
+    this.text = config.toText();
+    this.config = parse(text);
+    this.contents = contents;
+    this.id = Strings.emptyToNull(this.config.getString(SECTION_MESSAGE, null, KEY_ID));
+
+    ImmutableMap.Builder<String, Settings> settings = ImmutableMap.builder();
+    for (String messageId : messageIds(this.config)) {
+      String subsection = messageId.equals(id) ? null : messageId;
+      settings.put(
+          messageId,
+          new Settings(
+              subsection,
+              this.config.getString(SECTION_MESSAGE, subsection, KEY_STARTS_AT),
+              this.config.getString(SECTION_MESSAGE, subsection, KEY_EXPIRES_AT),
+              this.config.getString(SECTION_MESSAGE, subsection, KEY_CONTENT_ID),
+              ImmutableList.copyOf(
+                  this.config.getStringList(SECTION_MESSAGE, subsection, KEY_PROJECT)),
+              ImmutableList.copyOf(
+                  this.config.getStringList(SECTION_MESSAGE, subsection, KEY_HOST))));
+    }
+    this.settings = settings.build();
+
+    Hasher hasher = Hashing.murmur3_128().newHasher().putString(text, UTF_8);
+    for (String contentId : ImmutableSortedSet.copyOf(contents.keySet())) {
+      hasher.putString(contentId, UTF_8).putString(contents.get(contentId).contentId(), UTF_8);
+    }
+    this.version = hasher.hash().toString();
+  }
+
+  /** Creates the configured message with the given content for the message of the config. */
+  public ConfiguredMessage(Config config, @Nullable String message) {
+    this(config, contentOf(config, message));
+  }
+
+  /** Returns a copy of the config, which can be modified to create an updated message. */
+  public Config config() {
+    return parse(text);
+  }
+
+  /** Returns the config as text. */
+  public String toText() {
+    return text;
+  }
+
+  /**
+   * Returns the content of the configured messages by message ID. Messages without content file
+   * are missing.
+   */
+  public ImmutableMap<String, MessageContent> contents() {
+    return contents;
+  }
+
+  /** Returns the settings of all messages by message ID, the message of the config comes first. */
+  public ImmutableMap<String, Settings> settings() {
+    return settings;
+  }
+
+  /** Returns the IDs of all messages in the config, the message of the config comes first. */
+  public static ImmutableSet<String> messageIds(Config config) {
+    ImmutableSet.Builder<String> ids = ImmutableSet.builder();
+    String id = config.getString(SECTION_MESSAGE, null, KEY_ID);
+    if (!Strings.isNullOrEmpty(id)) {
+      ids.add(id);
+    }
+    ids.addAll(config.getSubsections(SECTION_MESSAGE));
+    return ids.build();
+  }
+
+  /**
+   * Returns the subsection configuring the message with the given ID, {@code null} for the message
+   * of the {@code [message]} section.
+   */
+  @Nullable
+  public String subsection(String messageId) {
+    return messageId.equals(id) ? null : messageId;
+  }
+
+  /** Returns the ID of the message configured in the {@code [message]} section. */
+  @Nullable
+  public String id() {
+    return id;
+  }
+
+  /** Returns the content of the message configured in the {@code [message]} section. */
+  @Nullable
+  public String message() {
+    String id = id();
+    MessageContent content = id != null ? contents.get(id) : null;
+    return content != null ? content.html() : null;
+  }
+
+  /**
+   * Returns the version of the configuration, which changes whenever the config or the content of
+   * any of the messages changes.
+   */
+  public String version() {
+    return version;
+  }
+
+  /** Returns the configured message with the content of one message replaced. */
+  public ConfiguredMessage withContent(Config config, String id, String message) {
+    Map<String, MessageContent> updated = new HashMap<>(contents);
+    updated.put(id, MessageContent.of(message));
+    return new ConfiguredMessage(config, ImmutableMap.copyOf(updated));
+  }
+
+  /**
+   * Merges two concurrent modifications of the messages.
+   *
+   * <p>Modifications of different keys of the {@code message} sections, or of the content of
+   * different messages, are combined. Other sections of the config are taken from {@code
+   * theirs}.
+   *
+   * @param base the messages both modifications are based on
+   * @param ours the messages with one modification
+   * @param theirs the messages with the other modification
+   * @throws MessageStoreConflictException if both modified the same key or content differently
+   */
+  public static ConfiguredMessage merge(
+      ConfiguredMessage base, ConfiguredMessage ours, ConfiguredMessage theirs)
+      throws MessageStoreConflictException {
+    Config merged = theirs.config();
+    Set<Key> keys = new LinkedHashSet<>();
+    keys.addAll(keysOf(base.config));
+    keys.addAll(keysOf(ours.config));
+    keys.addAll(keysOf(theirs.config));
+    for (Key key : keys) {
+      List<String> value =
+          pick(
+              key.valuesIn(base.config),
+              key.valuesIn(ours.config),
+              key.valuesIn(theirs.config),
+              key.toString());
+      if (value.isEmpty()) {
+        merged.unset(SECTION_MESSAGE, key.subsection(), key.name());
+      } else {
+        merged.setStringList(SECTION_MESSAGE, key.subsection(), key.name(), value);
+      }
+    }
+    // Unsetting all keys of a deleted message leaves its subsection behind.
+    for (String subsection : ImmutableList.copyOf(merged.getSubsections(SECTION_MESSAGE))) {
+      if (merged.getNames(SECTION_MESSAGE, subsection).isEmpty()) {
+        merged.unsetSection(SECTION_MESSAGE, subsection);
+      }
+    }
+
+    Set<String> ids = new LinkedHashSet<>();
+    ids.addAll(base.contents().keySet());
+    ids.addAll(ours.contents().keySet());
+    ids.addAll(theirs.contents().keySet());
+    ImmutableMap.Builder<String, MessageContent> contents = ImmutableMap.builder();
+    for (String id : ids) {
+      MessageContent content =
+          pick(
+              base.contents().get(id),
+              ours.contents().get(id),
+              theirs.contents().get(id),
+              "content of message " + id);
+      if (content != null) {
+        contents.put(id, content);
+      }
+    }
+    return new ConfiguredMessage(merged, contents.build());
+  }
+
+  private static Config parse(String text) {
+    Config config = new Config();
+    try {
+      config.fromText(text);
+    } catch (ConfigInvalidException e) {
+      throw new IllegalStateException("Couldn't parse config text", e);
+    }
+    return config;
+  }
+
+  private static <T> T pick(T base, T ours, T theirs, String what)
+      throws MessageStoreConflictException {
+    if (Objects.equals(ours, base)) {
+      return theirs;
+    }
+    if (Objects.equals(theirs, base) || Objects.equals(ours, theirs)) {
+      return ours;
+    }
+    throw new MessageStoreConflictException(what + " was modified concurrently");
+  }
+
+  private static Set<Key> keysOf(Config config) {
+    Set<Key> keys = new LinkedHashSet<>();
+    for (String name : config.getNames(SECTION_MESSAGE, null)) {
+      keys.add(new Key(null, name));
+    }
+    for (String subsection : config.getSubsections(SECTION_MESSAGE)) {
+      for (String name : config.getNames(SECTION_MESSAGE, subsection)) {
+        keys.add(new Key(subsection, name));
+      }
+    }
+    return keys;
+  }
+
+  /** A key of the {@code message} section or one of its subsections. */
+  private record Key(@Nullable String subsection, String name) {
+    List<String> valuesIn(Config config) {
+      return Arrays.asList(config.getStringList(SECTION_MESSAGE, subsection, name));
+    }
+
+    @Override
+    public String toString() {
+      return SECTION_MESSAGE + (subsection != null ? "." + subsection : "") + "." + name;
+    }
+  }
+
+  private static ImmutableMap<String, MessageContent> contentOf(
+      Config config, @Nullable String message) {
+    String id = config.getString(SECTION_MESSAGE, null, KEY_ID);
+    if (message == null || Strings.isNullOrEmpty(id)) {
+      return ImmutableMap.of();
+    }
+    return ImmutableMap.of(id, MessageContent.of(message));
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Checks the files of the {@link FileBasedMessageStore} for modifications at the poll interval.
+ *
+ * <p>The files may be modified by hand, or by other servers sharing them. Refreshing the current
+ * message when they are modified notifies the clients watching it, even if nobody reads the
+ * message from this server meanwhile.
+ */
+@Singleton
+public class FileBasedMessagePoller implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final FileBasedMessageStore messageStore;
+  private final MessageActivationTimer activationTimer;
+  private final WorkQueue workQueue;
+  private final long pollIntervalMillis;
+
+  private ScheduledFuture<?> task;
+
+  @Inject
+  FileBasedMessagePoller(
+      FileBasedMessageStore messageStore,
+      MessageActivationTimer activationTimer,
+      WorkQueue workQueue,
+      @PollInterval long pollIntervalMillis) {
+    this.messageStore = messageStore;
+    this.activationTimer = activationTimer;
+    this.workQueue = workQueue;
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  @Override
+  public void start() {
+    if (pollIntervalMillis <= 0) {
+      return;
+    }
+    task =
+        workQueue
+            .getDefaultQueue()
+            .scheduleWithFixedDelay(
+                this::poll, pollIntervalMillis, pollIntervalMillis, MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (task != null) {
+      task.cancel(true);
+      task = null;
+    }
+  }
+
+  private void poll() {
+    try {
+      if (messageStore.poll()) {
+        activationTimer.refreshNow();
+      }
+    } catch (MessageStoreException e) {
+      logger.atWarning().withCause(e).log("Couldn't check the message files for modifications");
+    }
+  }
+}
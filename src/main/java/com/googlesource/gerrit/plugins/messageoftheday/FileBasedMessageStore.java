@@ -14,21 +14,37 @@
 
 package com.googlesource.gerrit.plugins.messageoftheday;
 
-import static com.google.common.io.Files.asCharSink;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_CONTENT_ID;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
 
-import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
-import com.google.common.io.CharSink;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.util.time.TimeUtil;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.internal.storage.file.FileSnapshot;
+import org.eclipse.jgit.internal.storage.file.LockFile;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.storage.file.FileBasedConfig;
 import org.eclipse.jgit.util.FS;
 
@@ -36,29 +52,173 @@ import org.eclipse.jgit.util.FS;
 public class FileBasedMessageStore implements MessageStore {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   private static final String SECTION_MESSAGE = "message";
-  private static final String KEY_ID = "id";
+  private static final int MAX_LOAD_ATTEMPTS = 50;
+  private static final long LOAD_RETRY_DELAY_MILLIS = 10;
+  private static final int MAX_LOCK_ATTEMPTS = 10;
+  private static final long LOCK_RETRY_DELAY_MILLIS = 50;
+  private static final long STALE_LOCK_MILLIS = MINUTES.toMillis(1);
 
   private final File cfgFile;
+  private final File cfgLockFile;
   private final Path dataDir;
+  private final long maxMessageSize;
+  private final MessageMetrics metrics;
+
+  private final long pollIntervalMillis;
+
+  private final AtomicLong loads = new AtomicLong();
+  private volatile Snapshot snapshot;
+  private volatile long nextCheckMillis;
 
   @Inject
-  FileBasedMessageStore(@ConfigFile File cfgFile, @DataDir Path dataDir) {
+  FileBasedMessageStore(
+      @ConfigFile File cfgFile,
+      @DataDir Path dataDir,
+      @MaxMessageSize long maxMessageSize,
+      @PollInterval long pollIntervalMillis,
+      MessageMetrics metrics) {
     this.cfgFile = cfgFile;
+    this.cfgLockFile = new File(cfgFile.getPath() + Constants.LOCK_SUFFIX);
     this.dataDir = dataDir;
+    this.maxMessageSize = maxMessageSize;
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.metrics = metrics;
   }
 
+  /**
+   * Returns the messages.
+   *
+   * <p>The files are checked for modifications made outside of this server at most once per poll
+   * interval. Messages saved through this store are returned right away.
+   */
   @Override
   public ConfiguredMessage getConfiguredMessage() throws MessageStoreException {
+    Snapshot current = snapshot;
+    if (current != null && TimeUtil.nowMs() < nextCheckMillis) {
+      return current.message();
+    }
+    return check(current);
+  }
+
+  /**
+   * Checks the files for modifications, regardless of the poll interval.
+   *
+   * @return whether the messages were modified since they were last returned
+   */
+  boolean poll() throws MessageStoreException {
+    Snapshot current = snapshot;
+    if (current == null) {
+      // Nothing was returned yet.
+      return false;
+    }
+    return check(current) != current.message();
+  }
+
+  private ConfiguredMessage check(@Nullable Snapshot current) throws MessageStoreException {
+    long now = TimeUtil.nowMs();
+    if (current == null || current.isModified()) {
+      Snapshot loaded = cache(load(current));
+      if (current != null && loaded.message() != current.message()) {
+        metrics.incrementCacheRequests(MessageMetrics.CacheResult.RELOAD);
+      }
+      current = loaded;
+    }
+    nextCheckMillis = now + pollIntervalMillis;
+    return current.message();
+  }
+
+  /**
+   * Caches the loaded snapshot, unless a snapshot loaded later was cached meanwhile.
+   *
+   * <p>Files are read again whenever they may have been modified, e.g. right after they were saved
+   * or touched. If their content didn't change, the cached messages are kept, so that they aren't
+   * compiled again and watchers aren't woken up.
+   *
+   * @return the cached snapshot
+   */
+  private synchronized Snapshot cache(Snapshot loaded) {
+    Snapshot cached = snapshot;
+    if (cached != null && cached.load() > loaded.load()) {
+      return cached;
+    }
+    if (cached != null
+        && loaded.message() != cached.message()
+        && loaded.message().version().equals(cached.message().version())) {
+      loaded = loaded.withMessage(cached.message());
+    }
+    snapshot = loaded;
+    return loaded;
+  }
+
+  private Snapshot load(@Nullable Snapshot previous) throws MessageStoreException {
+    try (Timer1.Context<String> ignored = metrics.startLoad(MessageMetrics.FILE_BACKEND)) {
+      return loadConsistent(previous);
+    }
+  }
+
+  /**
+   * Loads the files, making sure that the HTML files match the config.
+   *
+   * <p>While a message is saved, the HTML files are replaced before the config referencing them.
+   * The previous messages are returned until the save is done, or if there are none, the files are
+   * read again once it is. HTML files modified by hand don't match the config either, they are
+   * returned as they are.
+   *
+   * @param previous the previously loaded messages, {@code null} if none were loaded
+   */
+  private Snapshot loadConsistent(@Nullable Snapshot previous) throws MessageStoreException {
+    for (int attempt = 1; ; attempt++) {
+      Snapshot loaded = loadFiles();
+      if (loaded.isConsistent() || attempt == MAX_LOAD_ATTEMPTS) {
+        return loaded;
+      }
+      if (!cfgLockFile.exists() && !loaded.cfgSnapshot().isModified(cfgFile)) {
+        // No save is in progress or completed since the files were read.
+        return loaded;
+      }
+      if (previous != null) {
+        // The files are modified, so they are read again on the next check.
+        return previous;
+      }
+      logger.atFine().log("Message files are being updated, reloading them");
+      try {
+        Thread.sleep(LOAD_RETRY_DELAY_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return loaded;
+      }
+    }
+  }
+
+  private Snapshot loadFiles() throws MessageStoreException {
+    // Loads started later read the same or newer files.
+    long load = loads.incrementAndGet();
+    // Take the file snapshots before reading, so that a concurrent modification is detected by the
+    // next read rather than being masked by the cached content.
+    FileSnapshot cfgSnapshot = FileSnapshot.save(cfgFile);
     FileBasedConfig cfg = loadConfig();
 
-    String htmlFileId = cfg.getString(SECTION_MESSAGE, null, KEY_ID);
-    if (Strings.isNullOrEmpty(htmlFileId)) {
+    ImmutableSet<String> ids = ConfiguredMessage.messageIds(cfg);
+    if (ids.isEmpty()) {
       logger.atWarning().log("id not defined, no message will be shown");
-      return new ConfiguredMessage(cfg, null);
     }
 
-    String message = loadMessage(htmlFileId);
-    return new ConfiguredMessage(cfg, message);
+    ImmutableMap.Builder<File, FileSnapshot> htmlSnapshots = ImmutableMap.builder();
+    ImmutableMap.Builder<String, MessageContent> contents = ImmutableMap.builder();
+    for (String id : ids) {
+      File htmlFile = htmlFile(id);
+      htmlSnapshots.put(htmlFile, FileSnapshot.save(htmlFile));
+      String message = loadMessage(id);
+      if (message != null) {
+        contents.put(id, MessageContent.of(message));
+      }
+    }
+    return new Snapshot(
+        load,
+        new ConfiguredMessage(cfg, contents.build()),
+        cfgFile,
+        cfgSnapshot,
+        htmlSnapshots.build());
   }
 
   private FileBasedConfig loadConfig() throws MessageStoreException {
@@ -72,40 +232,243 @@ public class FileBasedMessageStore implements MessageStore {
   }
 
   private String loadMessage(String id) {
-    try {
-      return Files.readString(dataDir.resolve(id + ".html"), UTF_8);
+    byte[] content;
+    try (InputStream in = Files.newInputStream(htmlFile(id).toPath())) {
+      // Read one byte more than allowed to detect oversized messages without reading them fully.
+      content = ByteStreams.limit(in, maxMessageSize + 1).readAllBytes();
     } catch (IOException e1) {
       logger.atWarning().log("No HTML-file was found for message %s, no message will be shown", id);
       return null;
     }
+    if (content.length > maxMessageSize) {
+      logger.atWarning().log(
+          "HTML-file of message %s exceeds %d bytes, no message will be shown", id, maxMessageSize);
+      metrics.incrementOversizedMessages();
+      return null;
+    }
+    return new String(content, UTF_8);
   }
 
+  /**
+   * Saves the message.
+   *
+   * <p>Writers exclude each other through the lock file of the config, and check the update
+   * against the files on disk while holding it. Each HTML file is written to a temporary file
+   * first, which is synced to disk and then moved into place atomically, so that readers never
+   * see a partially written file. The config file, which records the content ID of each HTML
+   * file, is replaced last by committing its lock file. Readers which see HTML files not matching
+   * the config keep returning the previous messages, or read the files again, until the config is
+   * replaced, so that they get a consistent pair without locking out writers.
+   */
   @Override
-  public void saveConfiguredMessage(ConfiguredMessage message) throws MessageStoreException {
-    FileBasedConfig configFile = new FileBasedConfig(cfgFile, FS.DETECTED);
+  public void saveConfiguredMessage(
+      ConfiguredMessage base, ConfiguredMessage message, @Nullable String expectedVersion)
+      throws MessageStoreException {
+    try (Timer1.Context<String> ignored = metrics.startSave(MessageMetrics.FILE_BACKEND)) {
+      saveLocked(base, message, expectedVersion);
+    }
+  }
 
-    addAll(configFile, message.config());
+  private void saveLocked(
+      ConfiguredMessage base, ConfiguredMessage message, @Nullable String expectedVersion)
+      throws MessageStoreException {
+    LockFile lock = lockConfig();
+    try {
+      // Check against the files, the cached snapshot may be outdated. Other writers are locked out,
+      // so the files can only mismatch if they were modified by hand.
+      ConfiguredMessage current = loadFiles().message();
+      if (expectedVersion != null && !expectedVersion.equals(current.version())) {
+        throw new MessageStoreConflictException(
+            "message was modified, expected version doesn't match");
+      }
+      ConfiguredMessage toSave =
+          current.version().equals(base.version())
+              ? message
+              : ConfiguredMessage.merge(base, message, current);
+      write(toSave, current, lock);
+      // Cache the saved messages, or newer ones, so that they are returned right away. Writing
+      // committed the lock, so another save may be in progress already.
+      cache(load(null));
+    } finally {
+      lock.unlock();
+    }
+  }
 
-    String id = configFile.getString(SECTION_MESSAGE, null, KEY_ID);
+  private LockFile lockConfig() throws MessageStoreException {
+    LockFile lock = new LockFile(cfgFile);
     try {
-      Path path = dataDir.resolve(id + ".html");
-      CharSink sink = asCharSink(path.toFile(), StandardCharsets.UTF_8);
-      sink.write(message.message());
+      for (int attempt = 1; !lock.lock(); attempt++) {
+        if (attempt == MAX_LOCK_ATTEMPTS && removeStaleLock()) {
+          continue;
+        }
+        if (attempt >= MAX_LOCK_ATTEMPTS) {
+          logger.atWarning().log(
+              "Couldn't lock %s, delete %s if no save is in progress", cfgFile, cfgLockFile);
+          throw new MessageStoreConflictException(
+              "Couldn't save message, it is being modified concurrently");
+        }
+        Thread.sleep(LOCK_RETRY_DELAY_MILLIS);
+      }
     } catch (IOException e) {
-      throw new MessageStoreException("Failed to save message", e);
+      throw new MessageStoreException("Failed to lock config", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MessageStoreException("Interrupted while locking config", e);
     }
+    return lock;
+  }
 
+  /**
+   * Deletes the lock file of the config if it is older than any save takes, e.g. because the server
+   * died while saving.
+   *
+   * @return whether locking should be attempted again
+   */
+  private boolean removeStaleLock() throws IOException {
+    Path lockPath = cfgLockFile.toPath();
+    long ageMillis;
     try {
-      configFile.save();
+      // Compare with the clock of the file system rather than the server time.
+      ageMillis = System.currentTimeMillis() - Files.getLastModifiedTime(lockPath).toMillis();
+    } catch (NoSuchFileException e) {
+      return true;
+    }
+    if (ageMillis < STALE_LOCK_MILLIS) {
+      return false;
+    }
+    logger.atWarning().log(
+        "Deleting %s, which was left behind by a save %d seconds ago", lockPath, ageMillis / 1000);
+    Files.deleteIfExists(lockPath);
+    return true;
+  }
+
+  private void write(ConfiguredMessage message, ConfiguredMessage current, LockFile lock)
+      throws MessageStoreException {
+    Config config = new Config();
+    addAll(config, message.config());
+
+    ImmutableSet<String> ids = ConfiguredMessage.messageIds(config);
+    for (Map.Entry<String, MessageContent> e : message.contents().entrySet()) {
+      String id = e.getKey();
+      MessageContent content = e.getValue();
+      if (!ids.contains(id)) {
+        continue;
+      }
+      config.setString(
+          SECTION_MESSAGE, message.subsection(id), KEY_CONTENT_ID, content.contentId());
+      if (content.equals(current.contents().get(id))) {
+        continue;
+      }
+      try {
+        writeAtomically(htmlFile(id).toPath(), content.html().getBytes(UTF_8));
+      } catch (IOException ex) {
+        throw new MessageStoreException("Failed to save message", ex);
+      }
+    }
+
+    try {
+      lock.setFSync(true);
+      lock.write(config.toText().getBytes(UTF_8));
+      if (!lock.commit()) {
+        throw new IOException("Couldn't replace " + cfgFile);
+      }
     } catch (IOException e) {
       throw new MessageStoreException("Failed to save config", e);
     }
+    syncDirectory(cfgFile.toPath().toAbsolutePath().getParent());
+
+    // The config no longer references the HTML files of deleted messages.
+    for (String id : current.settings().keySet()) {
+      if (!ids.contains(id)) {
+        try {
+          Files.deleteIfExists(htmlFile(id).toPath());
+        } catch (IOException e) {
+          logger.atWarning().withCause(e).log("Couldn't delete HTML-file of message %s", id);
+        }
+      }
+    }
+  }
+
+  private static void writeAtomically(Path file, byte[] content) throws IOException {
+    Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        ByteBuffer buf = ByteBuffer.wrap(content);
+        while (buf.hasRemaining()) {
+          channel.write(buf);
+        }
+        channel.force(true);
+      }
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+    syncDirectory(file.getParent());
+  }
+
+  /** Persists renames in the directory. */
+  private static void syncDirectory(Path dir) {
+    // Not all platforms support syncing a directory, the file content is synced in any case.
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      logger.atFine().withCause(e).log("Couldn't sync directory %s", dir);
+    }
+  }
+
+  private File htmlFile(String id) {
+    return dataDir.resolve(id + ".html").toFile();
+  }
+
+  private void addAll(Config configFile, Config config) {
+    copySection(configFile, config, null);
+    for (String subsection : config.getSubsections(SECTION_MESSAGE)) {
+      copySection(configFile, config, subsection);
+    }
   }
 
-  private void addAll(FileBasedConfig configFile, Config config) {
-    for (String key : config.getNames(SECTION_MESSAGE, null)) {
-      configFile.setString(
-          SECTION_MESSAGE, null, key, config.getString(SECTION_MESSAGE, null, key));
+  private void copySection(Config configFile, Config config, String subsection) {
+    for (String key : config.getNames(SECTION_MESSAGE, subsection)) {
+      configFile.setStringList(
+          SECTION_MESSAGE,
+          subsection,
+          key,
+          Arrays.asList(config.getStringList(SECTION_MESSAGE, subsection, key)));
+    }
+  }
+
+  /** Content of the config and HTML files, together with the file state it was read from. */
+  private record Snapshot(
+      long load,
+      ConfiguredMessage message,
+      File cfgFile,
+      FileSnapshot cfgSnapshot,
+      ImmutableMap<File, FileSnapshot> htmlSnapshots) {
+    Snapshot withMessage(ConfiguredMessage message) {
+      return new Snapshot(load, message, cfgFile, cfgSnapshot, htmlSnapshots);
+    }
+
+    boolean isModified() {
+      if (cfgSnapshot.isModified(cfgFile)) {
+        return true;
+      }
+      for (Map.Entry<File, FileSnapshot> e : htmlSnapshots.entrySet()) {
+        if (e.getValue().isModified(e.getKey())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Whether the HTML files match the content IDs recorded in the config. */
+    boolean isConsistent() {
+      for (Map.Entry<String, MessageContent> e : message.contents().entrySet()) {
+        String expected = message.settings().get(e.getKey()).contentId();
+        if (expected != null && !expected.equals(e.getValue().contentId())) {
+          return false;
+        }
+      }
+      return true;
     }
   }
 }
@@ -16,21 +16,22 @@ package com.googlesource.gerrit.plugins.messageoftheday;
 
 import com.google.gerrit.extensions.annotations.PluginData;
 import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.lifecycle.LifecycleModule;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.SitePaths;
-import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import java.io.File;
 import java.nio.file.Path;
 
-public class FileBasedModule extends AbstractModule {
+public class FileBasedModule extends LifecycleModule {
   private static final String CONFIG_DIR = "configDir";
   private static final String DATA_DIR = "dataDir";
 
   @Override
   protected void configure() {
     bind(MessageStore.class).to(FileBasedMessageStore.class);
+    listener().to(FileBasedMessagePoller.class);
   }
 
   @Provides
@@ -14,85 +14,114 @@
 
 package com.googlesource.gerrit.plugins.messageoftheday;
 
-import com.google.common.base.Strings;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.restapi.CacheControl;
+import com.google.gerrit.extensions.restapi.ETagView;
 import com.google.gerrit.extensions.restapi.Response;
-import com.google.gerrit.extensions.restapi.RestReadView;
 import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.util.time.TimeUtil;
 import com.google.inject.Inject;
-import java.time.LocalDateTime;
+import com.google.inject.Singleton;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.Locale;
-import org.eclipse.jgit.lib.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class GetMessage implements RestReadView<ConfigResource> {
-  private static final String SECTION_MESSAGE = "message";
-  private static final String KEY_ID = "id";
-  private static final String KEY_STARTS_AT = "startsAt";
-  private static final String KEY_EXPIRES_AT = "expiresAt";
-
+@Singleton
+public class GetMessage implements ETagView<ConfigResource> {
   static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd:HHmm");
-  private static final DateTimeFormatter REST_RESPONSE_FORMAT =
-      DateTimeFormatter.ofPattern("MMM d, yyyy h:mm:ss a", Locale.ENGLISH);
+
+  private static final String CACHE_MAX_AGE = "cacheMaxAge";
+  private static final long DEFAULT_CACHE_MAX_AGE_SECONDS = 60;
+  static final String NO_MESSAGE_ETAG = "\"none\"";
+  private static final MessageSchedule.Segment NO_MESSAGE =
+      new MessageSchedule.Segment(Long.MIN_VALUE, Long.MAX_VALUE, ImmutableList.of());
 
   private static final Logger log = LoggerFactory.getLogger(GetMessage.class);
 
-  private final MessageStore messageStore;
+  private final CompiledMessageCache compiledMessageCache;
+  private final MessageActivationTimer activationTimer;
+  private final MessageMetrics metrics;
+  private final long cacheMaxAgeSeconds;
 
   @Inject
-  public GetMessage(MessageStore messageStore) {
-    this.messageStore = messageStore;
+  public GetMessage(
+      CompiledMessageCache compiledMessageCache,
+      MessageActivationTimer activationTimer,
+      MessageMetrics metrics,
+      PluginConfigFactory cfg,
+      @PluginName String pluginName) {
+    this.compiledMessageCache = compiledMessageCache;
+    this.activationTimer = activationTimer;
+    this.metrics = metrics;
+    this.cacheMaxAgeSeconds =
+        ConfigUtil.getTimeUnit(
+            cfg.getFromGerritConfig(pluginName).getString(CACHE_MAX_AGE, ""),
+            DEFAULT_CACHE_MAX_AGE_SECONDS,
+            SECONDS);
   }
 
   @Override
-  public Response<MessageOfTheDayInfo> apply(ConfigResource rsrc) {
-    MessageOfTheDayInfo motd = new MessageOfTheDayInfo();
-    ConfiguredMessage configuredMessage;
+  public Response<?> apply(ConfigResource rsrc) {
+    return apply((String) null);
+  }
+
+  /** Returns the message for the project, or the server wide message if it is {@code null}. */
+  Response<?> apply(@Nullable String project) {
+    long start = System.nanoTime();
+    long now;
+    MessageSchedule schedule;
+    MessageSchedule.Segment segment;
     try {
-      configuredMessage = messageStore.getConfiguredMessage();
+      schedule = compiledMessageCache.getForRequest();
+      now = TimeUtil.nowMs();
+      segment = activationTimer.current(schedule, now);
     } catch (MessageStoreException e) {
       log.warn(e.getMessage());
+      metrics.recordRequest(MessageMetrics.Outcome.ERROR, start);
       return Response.none();
     }
-    Config cfg = configuredMessage.config();
-    String message = configuredMessage.message();
-    if (cfg == null || message == null) {
+    CompiledMessage message = messageOf(segment, project);
+    metrics.recordRequest(MessageMetrics.Outcome.of(schedule, segment, project, message), start);
+    if (message == null) {
       return Response.none();
     }
 
-    LocalDateTime expiresAt;
-    try {
-      expiresAt =
-          LocalDateTime.parse(cfg.getString(SECTION_MESSAGE, null, KEY_EXPIRES_AT), DATE_FORMAT);
-    } catch (DateTimeParseException | NullPointerException e) {
-      log.warn("expiresAt not defined, no message will be shown");
-      return Response.none();
-    }
+    // Let clients reuse the response at most until the shown message changes, so that they pick
+    // up scheduled messages and stop showing expired ones in time.
+    long maxAgeSeconds =
+        Math.min(cacheMaxAgeSeconds, MILLISECONDS.toSeconds(segment.until() - now));
+    return Response.ok(message.toBinaryResult())
+        .caching(CacheControl.PRIVATE(maxAgeSeconds, SECONDS).setMustRevalidate());
+  }
 
-    LocalDateTime startsAt;
-    try {
-      String startsAtValue = cfg.getString(SECTION_MESSAGE, null, KEY_STARTS_AT);
-      startsAt =
-          Strings.isNullOrEmpty(startsAtValue)
-              ? LocalDateTime.now()
-              : LocalDateTime.parse(startsAtValue, DATE_FORMAT);
-    } catch (DateTimeParseException e) {
-      startsAt = LocalDateTime.now();
-    }
+  @Override
+  public String getETag(ConfigResource rsrc) {
+    return getETag((String) null);
+  }
 
-    LocalDateTime now = LocalDateTime.now();
-    if (now.isBefore(startsAt) || now.isAfter(expiresAt)) {
-      log.debug("Current date/time is outside of the startsAt..expiresAt interval");
-      return Response.none();
-    }
+  String getETag(@Nullable String project) {
+    return currentSegment().eTag(project);
+  }
 
-    motd.html = message;
-    motd.id = cfg.getString(SECTION_MESSAGE, null, KEY_ID);
-    motd.contentId = Integer.toString(motd.html.hashCode());
-    motd.startsAt = startsAt.format(REST_RESPONSE_FORMAT);
-    motd.expiresAt = expiresAt.format(REST_RESPONSE_FORMAT);
-    return Response.ok(motd);
+  @Nullable
+  private static CompiledMessage messageOf(
+      MessageSchedule.Segment segment, @Nullable String project) {
+    return project != null ? segment.message(project) : segment.message();
+  }
+
+  private MessageSchedule.Segment currentSegment() {
+    try {
+      return activationTimer.current();
+    } catch (MessageStoreException e) {
+      log.warn(e.getMessage());
+      return NO_MESSAGE;
+    }
   }
 }
@@ -0,0 +1,42 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import com.google.gerrit.extensions.restapi.ETagView;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.server.project.ProjectResource;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Gets the message of the day to show for a project. */
+@Singleton
+public class GetProjectMessage implements ETagView<ProjectResource> {
+  private final GetMessage getMessage;
+
+  @Inject
+  GetProjectMessage(GetMessage getMessage) {
+    this.getMessage = getMessage;
+  }
+
+  @Override
+  public Response<?> apply(ProjectResource rsrc) {
+    return getMessage.apply(rsrc.getName());
+  }
+
+  @Override
+  public String getETag(ProjectResource rsrc) {
+    return getMessage.getETag(rsrc.getName());
+  }
+}
@@ -13,36 +13,47 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.messageoftheday;
 
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.CONFIG_FILE;
 import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.MASTER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.entities.Project.NameKey;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
-import com.google.gerrit.extensions.restapi.BinaryResult;
-import com.google.gerrit.extensions.restapi.ResourceNotFoundException;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.cache.CacheModule;
-import com.google.gerrit.server.change.FileContentUtil;
-import com.google.gerrit.server.project.ProjectCache;
-import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.inject.Inject;
 import com.google.inject.Module;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import java.util.Optional;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 
 @Singleton
-public class GitBasedConfigReader implements GitReferenceUpdatedListener {
+public class GitBasedConfigReader implements GitReferenceUpdatedListener, LifecycleListener {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-  private static final String SECTION_MESSAGE = "message";
-  private static final String KEY_ID = "id";
   private static final String CONFIG = "config";
 
   public static Module module() {
@@ -56,13 +67,48 @@ public class GitBasedConfigReader implements GitReferenceUpdatedListener {
 
   private final LoadingCache<String, CachedConfig> cache;
   private final Project.NameKey configRepoName;
+  private final Loader loader;
+  private final WorkQueue workQueue;
+  private final Provider<MessageActivationTimer> activationTimer;
+  private final long pollIntervalMillis;
+
+  private volatile ScheduledExecutorService reloadExecutor;
 
   @Inject
   GitBasedConfigReader(
       @Named(CONFIG) LoadingCache<String, CachedConfig> cache,
-      @GitConfigRepo Project.NameKey configRepoName) {
+      @GitConfigRepo Project.NameKey configRepoName,
+      Loader loader,
+      WorkQueue workQueue,
+      Provider<MessageActivationTimer> activationTimer,
+      @PollInterval long pollIntervalMillis) {
     this.cache = cache;
     this.configRepoName = configRepoName;
+    this.loader = loader;
+    this.workQueue = workQueue;
+    this.activationTimer = activationTimer;
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  @Override
+  public void start() {
+    ScheduledExecutorService executor = workQueue.createQueue(1, "MessageOfTheDay-Reload");
+    reloadExecutor = executor;
+    if (pollIntervalMillis > 0) {
+      // Updates may reach the repository without an event, e.g. by replication or when it is
+      // shared by several servers.
+      executor.scheduleWithFixedDelay(
+          this::reload, pollIntervalMillis, pollIntervalMillis, MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void stop() {
+    ScheduledExecutorService executor = reloadExecutor;
+    if (executor != null) {
+      reloadExecutor = null;
+      executor.shutdownNow();
+    }
   }
 
   @Override
@@ -73,7 +119,13 @@ public class GitBasedConfigReader implements GitReferenceUpdatedListener {
     if (!event.getRefName().equals(MASTER)) {
       return;
     }
-    cache.invalidateAll();
+    // Keep serving the cached config while the new one is loaded. Reloads run one at a time and
+    // always read the current tip, so that the last one wins when updates come in quick
+    // succession. Until the plugin is started, the cached config is loaded on first use anyway.
+    ScheduledExecutorService executor = reloadExecutor;
+    if (executor != null) {
+      executor.execute(this::reload);
+    }
   }
 
   public CachedConfig getConfig() {
@@ -85,49 +137,180 @@ public class GitBasedConfigReader implements GitReferenceUpdatedListener {
     }
   }
 
-  private static class Loader extends CacheLoader<String, CachedConfig> {
-    private final NameKey configRepoName;
+  /**
+   * Loads the current tip of the config repository right away, and caches it.
+   *
+   * <p>Reloads run one at a time, so that a tip loaded earlier never replaces a tip loaded later.
+   */
+  public synchronized CachedConfig reloadNow() throws IOException {
+    CachedConfig previous = getConfig();
+    CachedConfig reloaded = loader.load(previous);
+    if (reloaded != previous) {
+      cache.put(CONFIG, reloaded);
+    }
+    return reloaded;
+  }
+
+  private synchronized void reload() {
+    CachedConfig previous = cache.getIfPresent(CONFIG);
+    if (previous == null) {
+      // Nothing has been loaded yet, the next read loads the current tip.
+      return;
+    }
+    try {
+      CachedConfig reloaded = loader.load(previous);
+      if (reloaded == previous) {
+        return;
+      }
+      cache.put(CONFIG, reloaded);
+      if (reloaded.message() == previous.message()) {
+        // Only the commit changed, e.g. because the history was compacted.
+        return;
+      }
+    } catch (Exception e) {
+      logger.atSevere().withCause(e).log("Couldn't reload plugin config, invalidating it");
+      cache.invalidate(CONFIG);
+    }
+    activationTimer.get().refreshNow();
+  }
+
+  static class Loader extends CacheLoader<String, CachedConfig> {
+    private static final int MAX_CONFIG_SIZE = 1024 * 1024;
+
     private final Repository configRepo;
-    private final ProjectCache projectCache;
-    private final FileContentUtil fileContentUtil;
+    private final long maxMessageSize;
+    private final MessageMetrics metrics;
 
     @Inject
     Loader(
-        @GitConfigRepo Project.NameKey configRepoName,
         @GitConfigRepo Repository configRepo,
-        ProjectCache projectCache,
-        FileContentUtil fileContentUtil) {
-      this.configRepoName = configRepoName;
+        @MaxMessageSize long maxMessageSize,
+        MessageMetrics metrics) {
       this.configRepo = configRepo;
-      this.projectCache = projectCache;
-      this.fileContentUtil = fileContentUtil;
+      this.maxMessageSize = maxMessageSize;
+      this.metrics = metrics;
     }
 
     @Override
     public CachedConfig load(String key) throws Exception {
-      Optional<ProjectState> state = projectCache.get(configRepoName);
-      if (state.isEmpty()) {
-        return CachedConfig.empty();
-      }
+      return load(CachedConfig.empty());
+    }
+
+    /**
+     * Loads the config from the current tip of the config repository.
+     *
+     * @param previous the previously loaded config, returned as is if the tip didn't change. Its
+     *     config and messages are reused if their blobs didn't change.
+     */
+    CachedConfig load(CachedConfig previous) throws IOException {
       Ref ref = configRepo.exactRef(MASTER);
       if (ref == null) {
+        if (previous.commitId() == null) {
+          return previous;
+        }
+        metrics.incrementCacheRequests(MessageMetrics.CacheResult.RELOAD);
         return CachedConfig.empty();
       }
       ObjectId commitId = ref.getObjectId();
-      try {
-        Config config = new Config();
-        BinaryResult content =
-            fileContentUtil.getContent(configRepo, state.get(), commitId, "messageoftheday.config");
-        config.fromText(content.asString());
-        String id = config.getString(SECTION_MESSAGE, null, KEY_ID);
-        BinaryResult result =
-            fileContentUtil.getContent(configRepo, state.get(), commitId, id + ".html");
-        String message = result.asString();
-        return new CachedConfig(config, message, commitId);
-      } catch (ResourceNotFoundException e) {
-        logger.atWarning().withCause(e).log("Loading failed");
-        return CachedConfig.empty();
+      if (commitId.equals(previous.commitId())) {
+        // Not timed, polls and reloads for unrelated ref updates would hide the actual loads.
+        return previous;
+      }
+
+      try (Timer1.Context<String> ignored = metrics.startLoad(MessageMetrics.GIT_BACKEND)) {
+        CachedConfig loaded = loadCommit(commitId, previous);
+        if (previous.commitId() != null && loaded.message() != previous.message()) {
+          metrics.incrementCacheRequests(MessageMetrics.CacheResult.RELOAD);
+        }
+        return loaded;
+      }
+    }
+
+    private CachedConfig loadCommit(ObjectId commitId, CachedConfig previous) throws IOException {
+      try (RevWalk rw = new RevWalk(configRepo)) {
+        ObjectReader reader = rw.getObjectReader();
+        Map<String, ObjectId> blobs = rootBlobs(reader, rw.parseCommit(commitId).getTree());
+
+        ObjectId configBlobId = blobs.get(CONFIG_FILE);
+        if (configBlobId == null) {
+          logger.atWarning().log("%s not found in %s", CONFIG_FILE, commitId.name());
+          return new CachedConfig(
+              new ConfiguredMessage(new Config(), ImmutableMap.of()), commitId, null);
+        }
+        boolean configChanged = !configBlobId.equals(previous.configBlobId());
+        Config config;
+        if (!configChanged) {
+          config = previous.message().config();
+        } else {
+          String text = readBlob(reader, configBlobId, MAX_CONFIG_SIZE);
+          if (text == null) {
+            throw new IOException(
+                CONFIG_FILE + " in " + commitId.name() + " exceeds " + MAX_CONFIG_SIZE + " bytes");
+          }
+          config = new Config();
+          config.fromText(text);
+        }
+
+        ImmutableMap<String, MessageContent> previousContents = previous.message().contents();
+        ImmutableMap.Builder<String, MessageContent> contents = ImmutableMap.builder();
+        for (String id : ConfiguredMessage.messageIds(config)) {
+          ObjectId messageBlobId = blobs.get(id + ".html");
+          if (messageBlobId == null) {
+            logger.atWarning().log(
+                "No HTML-file was found for message %s, no message will be shown", id);
+            continue;
+          }
+          MessageContent content = previousContents.get(id);
+          if (content == null || !content.contentId().equals(messageBlobId.name())) {
+            String html = readBlob(reader, messageBlobId, maxMessageSize);
+            if (html == null) {
+              logger.atWarning().log(
+                  "HTML-file of message %s exceeds %d bytes, no message will be shown",
+                  id, maxMessageSize);
+              metrics.incrementOversizedMessages();
+              continue;
+            }
+            content = new MessageContent(html, messageBlobId.name());
+          }
+          contents.put(id, content);
+        }
+
+        ImmutableMap<String, MessageContent> loaded = contents.build();
+        if (!configChanged && loaded.equals(previousContents)) {
+          // Keep handing out the same message, so that it isn't compiled again.
+          return previous.withCommitId(commitId);
+        }
+        return new CachedConfig(new ConfiguredMessage(config, loaded), commitId, configBlobId);
+      } catch (ConfigInvalidException e) {
+        throw new IOException("Invalid " + CONFIG_FILE + " in " + commitId.name(), e);
+      }
+    }
+
+    /** Returns the IDs of the blobs in the root directory of the tree, by file name. */
+    private static Map<String, ObjectId> rootBlobs(ObjectReader reader, RevTree tree)
+        throws IOException {
+      Map<String, ObjectId> blobs = new HashMap<>();
+      try (TreeWalk tw = new TreeWalk(reader)) {
+        tw.addTree(tree);
+        tw.setRecursive(false);
+        while (tw.next()) {
+          if (tw.getFileMode(0).getObjectType() == Constants.OBJ_BLOB) {
+            blobs.put(tw.getPathString(), tw.getObjectId(0));
+          }
+        }
+      }
+      return blobs;
+    }
+
+    /** Reads the blob as a string, returns {@code null} if it is larger than {@code maxSize}. */
+    @Nullable
+    private static String readBlob(ObjectReader reader, ObjectId blobId, long maxSize)
+        throws IOException {
+      ObjectLoader loader = reader.open(blobId, Constants.OBJ_BLOB);
+      if (loader.getSize() > maxSize) {
+        return null;
       }
+      return new String(loader.getCachedBytes((int) Math.min(maxSize, Integer.MAX_VALUE)), UTF_8);
     }
   }
 }
@@ -16,8 +16,11 @@ package com.googlesource.gerrit.plugins.messageoftheday;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.Project.NameKey;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
@@ -27,25 +30,30 @@ import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.Map;
 import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.dircache.DirCacheEditor;
 import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.lib.CommitBuilder;
-import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 @Singleton
 public class GitBasedMessageStore implements MessageStore {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   public static String MASTER = Constants.R_HEADS + Constants.MASTER;
 
-  private static final String SECTION_MESSAGE = "message";
-  private static final String KEY_ID = "id";
+  static final String CONFIG_FILE = "messageoftheday.config";
+
+  private static final int MAX_ATTEMPTS = 3;
 
   private final GitBasedConfigReader configReader;
   private final GitReferenceUpdated gitRefUpdated;
@@ -53,6 +61,7 @@ public class GitBasedMessageStore implements MessageStore {
   private final Repository configRepo;
   private final Provider<CurrentUser> currentUser;
   private final PersonIdent gerritIdent;
+  private final MessageMetrics metrics;
 
   @Inject
   GitBasedMessageStore(
@@ -61,87 +70,158 @@ public class GitBasedMessageStore implements MessageStore {
       @GitConfigRepo Project.NameKey configRepoName,
       @GitConfigRepo Repository configRepo,
       @GerritPersonIdent PersonIdent gerritIdent,
-      Provider<CurrentUser> currentUser) {
+      Provider<CurrentUser> currentUser,
+      MessageMetrics metrics) {
     this.configReader = configReader;
     this.gitRefUpdated = gitRefUpdated;
     this.configRepoName = configRepoName;
     this.configRepo = configRepo;
     this.gerritIdent = gerritIdent;
     this.currentUser = currentUser;
+    this.metrics = metrics;
   }
 
   @Override
   public ConfiguredMessage getConfiguredMessage() throws MessageStoreException {
-    CachedConfig cached = configReader.getConfig();
-    return new ConfiguredMessage(cached.config(), cached.message());
+    return configReader.getConfig().message();
   }
 
   @Override
-  public void saveConfiguredMessage(ConfiguredMessage message) throws MessageStoreException {
-    CachedConfig cached = configReader.getConfig();
+  public void saveConfiguredMessage(
+      ConfiguredMessage base, ConfiguredMessage message, @Nullable String expectedVersion)
+      throws MessageStoreException {
+    try (Timer1.Context<String> ignored = metrics.startSave(MessageMetrics.GIT_BACKEND)) {
+      save(base, message, expectedVersion);
+    }
+  }
 
-    RefUpdate ru;
-    try {
-      ru = prepareRefUpdate(message.message(), configRepo, cached);
-      RefUpdate.Result result = ru.update();
-      switch (result) {
-        case NEW:
-        case FAST_FORWARD:
-          if (currentUser.get().isIdentifiedUser()) {
-            gitRefUpdated.fire(configRepoName, ru, currentUser.get().asIdentifiedUser().state());
-          }
+  private void save(
+      ConfiguredMessage base, ConfiguredMessage message, @Nullable String expectedVersion)
+      throws MessageStoreException {
+    try (ObjectInserter inserter = configRepo.newObjectInserter();
+        ObjectReader reader = inserter.newReader();
+        RevWalk rw = new RevWalk(reader)) {
+      // The expected version is checked against the tip, which the cached config may lag behind.
+      // The ref update only succeeds if the branch still points to the checked commit.
+      CachedConfig cached =
+          expectedVersion != null ? configReader.reloadNow() : configReader.getConfig();
+      for (int attempt = 1; ; attempt++) {
+        ConfiguredMessage current = cached.message();
+        if (expectedVersion != null && !expectedVersion.equals(current.version())) {
+          throw new MessageStoreConflictException(
+              "message was modified, expected version doesn't match");
+        }
+        // Rebase the update onto the tip, if the tip moved since the update was based on it.
+        ConfiguredMessage toSave =
+            current.version().equals(base.version())
+                ? message
+                : ConfiguredMessage.merge(base, message, current);
+        RefUpdate ru = prepareRefUpdate(toSave, current, rw, inserter, cached);
+        if (ru == null) {
+          // Nothing changed.
           return;
-        case LOCK_FAILURE:
-        case FORCED:
-        case IO_FAILURE:
-        case NOT_ATTEMPTED:
-        case NO_CHANGE:
-        case REJECTED:
-        case REJECTED_CURRENT_BRANCH:
-        case RENAMED:
-        case REJECTED_MISSING_OBJECT:
-        case REJECTED_OTHER_REASON:
-        default:
-          throw new MessageStoreException("Couldn't save message");
+        }
+        RefUpdate.Result result = ru.update(rw);
+        metrics.incrementRefUpdates(result);
+        switch (result) {
+          case NEW:
+          case FAST_FORWARD:
+            if (currentUser.get().isIdentifiedUser()) {
+              gitRefUpdated.fire(configRepoName, ru, currentUser.get().asIdentifiedUser().state());
+            }
+            reloadSaved();
+            return;
+          case LOCK_FAILURE:
+            if (attempt >= MAX_ATTEMPTS) {
+              throw new MessageStoreConflictException(
+                  "Couldn't save message, it is being modified concurrently");
+            }
+            // The tip moved, retry on top of it.
+            cached = configReader.reloadNow();
+            break;
+          case FORCED:
+          case IO_FAILURE:
+          case NOT_ATTEMPTED:
+          case NO_CHANGE:
+          case REJECTED:
+          case REJECTED_CURRENT_BRANCH:
+          case RENAMED:
+          case REJECTED_MISSING_OBJECT:
+          case REJECTED_OTHER_REASON:
+          default:
+            throw new MessageStoreException("Couldn't save message");
+        }
       }
     } catch (IOException e) {
       throw new MessageStoreException(e.getMessage(), e);
     }
   }
 
-  private RefUpdate prepareRefUpdate(String message, Repository repo, CachedConfig cachedConfig)
+  /** Caches the saved messages, so that they are returned right away. */
+  private void reloadSaved() {
+    try {
+      configReader.reloadNow();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Couldn't reload the saved messages");
+    }
+  }
+
+  /**
+   * Prepares the update of the branch to a commit with the given message on top of the cached
+   * commit.
+   *
+   * <p>The tree of the new commit is the tree of the cached commit with only the changed files
+   * replaced, and the files of deleted messages removed. Blobs are only inserted for changed
+   * files.
+   *
+   * @return the update, {@code null} if the tree didn't change
+   */
+  @Nullable
+  private RefUpdate prepareRefUpdate(
+      ConfiguredMessage message,
+      ConfiguredMessage current,
+      RevWalk rw,
+      ObjectInserter inserter,
+      CachedConfig cachedConfig)
       throws IOException {
-    Config cfg = cachedConfig.config();
-    ObjectInserter inserter = repo.newObjectInserter();
+    ObjectId parentId = cachedConfig.commitId();
+    RevTree parentTree = parentId != null ? rw.parseCommit(parentId).getTree() : null;
+    DirCache newTree =
+        parentTree != null
+            ? DirCache.read(rw.getObjectReader(), parentTree)
+            : DirCache.newInCore();
 
-    DirCache newTree = DirCache.newInCore();
     DirCacheEditor editor = newTree.editor();
-    ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, cfg.toText().getBytes(UTF_8));
-
-    editor.add(
-        new DirCacheEditor.PathEdit("messageoftheday.config") {
-          @Override
-          public void apply(DirCacheEntry ent) {
-            ent.setFileMode(FileMode.REGULAR_FILE);
-            ent.setObjectId(blobId);
-          }
-        });
-
-    ObjectId messageBlobId = inserter.insert(Constants.OBJ_BLOB, message.getBytes(UTF_8));
-    String id = cfg.getString(SECTION_MESSAGE, null, KEY_ID);
-    editor.add(
-        new DirCacheEditor.PathEdit(id + ".html") {
-          @Override
-          public void apply(DirCacheEntry ent) {
-            ent.setFileMode(FileMode.REGULAR_FILE);
-            ent.setObjectId(messageBlobId);
-          }
-        });
+    byte[] config = message.toText().getBytes(UTF_8);
+    ObjectId configId = inserter.idFor(Constants.OBJ_BLOB, config);
+    if (!configId.equals(idOf(newTree, CONFIG_FILE))) {
+      add(editor, CONFIG_FILE, inserter.insert(Constants.OBJ_BLOB, config));
+    }
+    for (Map.Entry<String, MessageContent> e : message.contents().entrySet()) {
+      String path = e.getKey() + ".html";
+      // The content ID is the ID of the blob holding the content.
+      if (!e.getValue().contentId().equals(idOf(newTree, path).name())) {
+        add(
+            editor,
+            path,
+            inserter.insert(Constants.OBJ_BLOB, e.getValue().html().getBytes(UTF_8)));
+      }
+    }
+    for (String id : current.settings().keySet()) {
+      if (!message.settings().containsKey(id)) {
+        editor.add(new DirCacheEditor.DeletePath(id + ".html"));
+      }
+    }
     editor.finish();
 
     ObjectId treeId = newTree.writeTree(inserter);
+    if (treeId.equals(parentTree)) {
+      return null;
+    }
     CommitBuilder cb = new CommitBuilder();
-    cb.setParentId(cachedConfig.commitId());
+    if (parentId != null) {
+      cb.setParentId(parentId);
+    }
     cb.setTreeId(treeId);
     Instant now = TimeUtil.now();
     PersonIdent author =
@@ -152,11 +232,27 @@ public class GitBasedMessageStore implements MessageStore {
     ObjectId newCommitId = inserter.insert(cb);
     inserter.flush();
 
-    RefUpdate ru = repo.updateRef(MASTER);
-    ru.setExpectedOldObjectId(cachedConfig.commitId());
+    RefUpdate ru = configRepo.updateRef(MASTER);
+    ru.setExpectedOldObjectId(parentId != null ? parentId : ObjectId.zeroId());
     ru.setNewObjectId(newCommitId);
     ru.setRefLogIdent(author);
     ru.setRefLogMessage("Update from REST API", false);
     return ru;
   }
+
+  private static ObjectId idOf(DirCache tree, String path) {
+    DirCacheEntry entry = tree.getEntry(path);
+    return entry != null ? entry.getObjectId() : ObjectId.zeroId();
+  }
+
+  private static void add(DirCacheEditor editor, String path, ObjectId blobId) {
+    editor.add(
+        new DirCacheEditor.PathEdit(path) {
+          @Override
+          public void apply(DirCacheEntry ent) {
+            ent.setFileMode(FileMode.REGULAR_FILE);
+            ent.setObjectId(blobId);
+          }
+        });
+  }
 }
@@ -39,6 +39,8 @@ public class GitBasedModule extends LifecycleModule {
         .annotatedWith(GitConfigRepo.class)
         .toInstance(Project.nameKey(configRepoName));
     listener().to(CloseConfigRepo.class);
+    listener().to(GitBasedConfigReader.class);
+    listener().to(HistoryCompactor.class);
     install(GitBasedConfigReader.module());
     DynamicSet.bind(binder(), GitReferenceUpdatedListener.class).to(GitBasedConfigReader.class);
   }
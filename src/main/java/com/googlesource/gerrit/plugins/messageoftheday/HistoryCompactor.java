@@ -0,0 +1,192 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.MASTER;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.GerritPersonIdent;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Squashes old history of the config repository, so that frequent updates don't make it grow
+ * without bound.
+ *
+ * <p>The commits to keep are recreated with the same trees, authors and messages: the oldest commit
+ * kept becomes the parentless root and each newer one is recreated on top of the previous one. The
+ * branch is then force-updated to the recreated tip. The tip keeps its tree, so the cached config
+ * stays valid. If the branch is updated concurrently, the compaction is skipped until the next run.
+ */
+@Singleton
+public class HistoryCompactor implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final String KEEP_VERSIONS = "keepVersions";
+  private static final String KEEP_HISTORY = "keepHistory";
+  private static final String COMPACTION_INTERVAL = "compactionInterval";
+
+  private final WorkQueue workQueue;
+  private final Repository configRepo;
+  private final Project.NameKey configRepoName;
+  private final GitReferenceUpdated gitRefUpdated;
+  private final PersonIdent gerritIdent;
+  private final int keepVersions;
+  private final long keepHistoryMillis;
+  private final long intervalMillis;
+
+  private ScheduledFuture<?> task;
+
+  @Inject
+  HistoryCompactor(
+      WorkQueue workQueue,
+      @GitConfigRepo Repository configRepo,
+      @GitConfigRepo Project.NameKey configRepoName,
+      GitReferenceUpdated gitRefUpdated,
+      @GerritPersonIdent PersonIdent gerritIdent,
+      PluginConfigFactory cfg,
+      @PluginName String pluginName) {
+    this.workQueue = workQueue;
+    this.configRepo = configRepo;
+    this.configRepoName = configRepoName;
+    this.gitRefUpdated = gitRefUpdated;
+    this.gerritIdent = gerritIdent;
+    PluginConfig pluginConfig = cfg.getFromGerritConfig(pluginName);
+    this.keepVersions = pluginConfig.getInt(KEEP_VERSIONS, 0);
+    this.keepHistoryMillis =
+        ConfigUtil.getTimeUnit(pluginConfig.getString(KEEP_HISTORY, ""), 0, MILLISECONDS);
+    this.intervalMillis =
+        ConfigUtil.getTimeUnit(
+            pluginConfig.getString(COMPACTION_INTERVAL, ""), DAYS.toMillis(1), MILLISECONDS);
+  }
+
+  @Override
+  public void start() {
+    if (keepVersions <= 0 && keepHistoryMillis <= 0) {
+      return;
+    }
+    task =
+        workQueue
+            .getDefaultQueue()
+            .scheduleAtFixedRate(this::run, intervalMillis, intervalMillis, MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (task != null) {
+      task.cancel(true);
+      task = null;
+    }
+  }
+
+  private void run() {
+    try {
+      compact();
+    } catch (IOException e) {
+      logger.atSevere().withCause(e).log("Couldn't compact history of %s", configRepoName);
+    }
+  }
+
+  void compact() throws IOException {
+    Ref ref = configRepo.exactRef(MASTER);
+    if (ref == null) {
+      return;
+    }
+    long cutoff = TimeUtil.nowMs() - keepHistoryMillis;
+    try (RevWalk rw = new RevWalk(configRepo);
+        ObjectInserter inserter = configRepo.newObjectInserter()) {
+      RevCommit tip = rw.parseCommit(ref.getObjectId());
+      List<RevCommit> kept = new ArrayList<>();
+      for (RevCommit c = tip; ; ) {
+        kept.add(c);
+        if (c.getParentCount() == 0) {
+          // The whole history is kept.
+          return;
+        }
+        RevCommit parent = rw.parseCommit(c.getParent(0));
+        if (!keep(kept.size(), parent, cutoff)) {
+          break;
+        }
+        c = parent;
+      }
+
+      ObjectId newTip = null;
+      for (int i = kept.size() - 1; i >= 0; i--) {
+        RevCommit c = kept.get(i);
+        CommitBuilder cb = new CommitBuilder();
+        cb.setTreeId(c.getTree());
+        if (newTip != null) {
+          cb.setParentId(newTip);
+        }
+        cb.setAuthor(c.getAuthorIdent());
+        cb.setCommitter(c.getCommitterIdent());
+        cb.setMessage(c.getFullMessage());
+        newTip = inserter.insert(cb);
+      }
+      inserter.flush();
+
+      RefUpdate ru = configRepo.updateRef(MASTER);
+      ru.setExpectedOldObjectId(tip);
+      ru.setNewObjectId(newTip);
+      ru.setForceUpdate(true);
+      ru.setRefLogIdent(gerritIdent);
+      ru.setRefLogMessage("Compact history", false);
+      RefUpdate.Result result = ru.update(rw);
+      switch (result) {
+        case FORCED:
+          logger.atInfo().log(
+              "Compacted history of %s to %d commits", configRepoName, kept.size());
+          gitRefUpdated.fire(configRepoName, ru, null);
+          break;
+        case LOCK_FAILURE:
+          logger.atFine().log(
+              "%s was updated while compacting its history, retrying on next run",
+              configRepoName);
+          break;
+        default:
+          logger.atWarning().log("Couldn't compact history of %s: %s", configRepoName, result);
+      }
+    }
+  }
+
+  /** Whether the commit with the given number of newer commits is kept. */
+  private boolean keep(int newerCommits, RevCommit commit, long cutoff) {
+    return (keepVersions > 0 && newerCommits < keepVersions)
+        || (keepHistoryMillis > 0 && commit.getCommitTime() * 1000L >= cutoff);
+  }
+}
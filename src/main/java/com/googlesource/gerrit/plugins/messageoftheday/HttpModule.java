@@ -17,12 +17,13 @@ package com.googlesource.gerrit.plugins.messageoftheday;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.extensions.webui.JavaScriptPlugin;
 import com.google.gerrit.extensions.webui.WebUiPlugin;
-import com.google.inject.AbstractModule;
+import com.google.gerrit.httpd.plugins.HttpPluginModule;
 
-public class HttpModule extends AbstractModule {
+public class HttpModule extends HttpPluginModule {
   @Override
-  protected void configure() {
+  protected void configureServlets() {
     DynamicSet.bind(binder(), WebUiPlugin.class)
         .toInstance(new JavaScriptPlugin("gr-messageoftheday.js"));
+    serve("/watch").with(WatchMessageServlet.class);
   }
 }
@@ -0,0 +1,166 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Publishes the segment of the {@link MessageSchedule} that is current.
+ *
+ * <p>The timer wakes up at the end of the current segment, when a message is activated or expires,
+ * and publishes the next segment. Requests then only read the published segment, and only
+ * look it up themselves when the schedule changed or the timer fell behind. Whenever a new segment
+ * is published, the {@link MessageWatchers} are notified on the timer's thread, so that requests
+ * never write to the responses of other clients.
+ */
+@Singleton
+public class MessageActivationTimer implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final State INITIAL =
+      new State(
+          null, new MessageSchedule.Segment(Long.MIN_VALUE, Long.MIN_VALUE, ImmutableList.of()));
+
+  private final CompiledMessageCache compiledMessageCache;
+  private final WorkQueue workQueue;
+  private final MessageMetrics metrics;
+  private final MessageWatchers watchers;
+
+  private volatile State state = INITIAL;
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> next;
+
+  @Inject
+  MessageActivationTimer(
+      CompiledMessageCache compiledMessageCache,
+      WorkQueue workQueue,
+      MessageMetrics metrics,
+      MessageWatchers watchers) {
+    this.compiledMessageCache = compiledMessageCache;
+    this.workQueue = workQueue;
+    this.metrics = metrics;
+    this.watchers = watchers;
+  }
+
+  @Override
+  public synchronized void start() {
+    executor = workQueue.createQueue(1, "MessageOfTheDay-Activation");
+    executor.execute(this::refresh);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /** Returns the current segment of the schedule of the current messages. */
+  public MessageSchedule.Segment current() throws MessageStoreException {
+    return current(compiledMessageCache.get(), TimeUtil.nowMs());
+  }
+
+  /** Returns the segment of the schedule containing the given time. */
+  public MessageSchedule.Segment current(MessageSchedule schedule, long now) {
+    State current = state;
+    if (current.schedule() == schedule && current.segment().contains(now)) {
+      return current.segment();
+    }
+    return publish(schedule, now).segment();
+  }
+
+  /** Looks up the current messages in the background, e.g. after they were updated. */
+  public synchronized void refreshNow() {
+    if (executor != null) {
+      executor.execute(this::refresh);
+    }
+  }
+
+  private void refresh() {
+    try {
+      MessageSchedule schedule = compiledMessageCache.get();
+      long now = TimeUtil.nowMs();
+      synchronized (this) {
+        // Also wake up again if the segment didn't change, e.g. when woken up early.
+        scheduleNext(publish(schedule, now).segment().until() - now);
+      }
+    } catch (MessageStoreException e) {
+      logger.atWarning().withCause(e).log("Couldn't refresh the current message");
+    }
+  }
+
+  private void notifyWatchers() {
+    if (executor != null) {
+      // Always send the latest state, in case it was published again meanwhile.
+      executor.execute(() -> watchers.publish(state.segment()));
+    }
+  }
+
+  private synchronized State publish(MessageSchedule schedule, long now) {
+    State previous = state;
+    if (previous.schedule() == schedule && now < previous.segment().until()) {
+      // Request threads may take the time before the timer publishes a later segment of the same
+      // schedule, don't go back to an earlier segment with their stale time.
+      return previous;
+    }
+    State updated = new State(schedule, schedule.at(now));
+    CompiledMessage shown = updated.segment().message();
+    metrics.setShownMessageSize(shown != null ? shown.size() : 0);
+    if (previous != INITIAL) {
+      fireEvents(previous.segment().message(), updated.segment().message(), now);
+    }
+    state = updated;
+    scheduleNext(updated.segment().until() - now);
+    notifyWatchers();
+    return updated;
+  }
+
+  private void fireEvents(
+      @Nullable CompiledMessage previous, @Nullable CompiledMessage current, long now) {
+    if (previous != null && (current == null || !previous.id().equals(current.id()))) {
+      if (previous.expiresAtMillis() < now) {
+        logger.atInfo().log("Message %s expired", previous.id());
+        metrics.incrementExpiredMessages();
+      }
+    }
+    if (current != null && (previous == null || !current.id().equals(previous.id()))) {
+      logger.atInfo().log("Message %s activated", current.id());
+      metrics.incrementActivatedMessages();
+    }
+  }
+
+  private void scheduleNext(long delayMillis) {
+    if (next != null) {
+      next.cancel(false);
+      next = null;
+    }
+    if (executor != null && delayMillis < Long.MAX_VALUE / 2) {
+      next = executor.schedule(this::refresh, delayMillis, MILLISECONDS);
+    }
+  }
+
+  private record State(@Nullable MessageSchedule schedule, MessageSchedule.Segment segment) {}
+}
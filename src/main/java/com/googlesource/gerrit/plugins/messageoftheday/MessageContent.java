@@ -0,0 +1,35 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+
+/**
+ * The HTML content of a message.
+ *
+ * @param contentId digest of the content, the ID of the Git blob holding the content
+ */
+public record MessageContent(String html, String contentId) {
+  /** Creates the content for the given HTML, computing its content ID. */
+  public static MessageContent of(String html) {
+    try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+      return new MessageContent(
+          html, formatter.idFor(Constants.OBJ_BLOB, html.getBytes(UTF_8)).name());
+    }
+  }
+}
@@ -17,4 +17,10 @@ package com.googlesource.gerrit.plugins.messageoftheday;
 public class MessageInput {
   public String message;
   public String expiresAt;
+
+  /**
+   * The version of the messages the update is based on, as returned by GET. If set, the update is
+   * rejected if the messages were modified since.
+   */
+  public String expectedVersion;
 }
@@ -0,0 +1,210 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.eclipse.jgit.lib.RefUpdate;
+
+@Singleton
+public class MessageMetrics {
+  /** The outcome of a request for the message. */
+  enum Outcome {
+    /** A message was returned. */
+    SHOWN,
+    /** No message is configured, or none of the configured messages is valid. */
+    NONE,
+    /** No message is shown, because all configured messages expired. */
+    EXPIRED,
+    /** No message is shown yet, because a configured message didn't start yet. */
+    NOT_YET_STARTED,
+    /** The messages couldn't be loaded. */
+    ERROR;
+
+    /**
+     * Returns the outcome of a request for the project, or for the server wide message if it is
+     * {@code null}.
+     */
+    static Outcome of(
+        MessageSchedule schedule,
+        MessageSchedule.Segment segment,
+        @Nullable String project,
+        @Nullable CompiledMessage shown) {
+      if (shown != null) {
+        return SHOWN;
+      }
+      // None of the messages for the project is active, so they either start later or expired.
+      ImmutableList<CompiledMessage> messages = schedule.messagesFor(project);
+      if (messages.stream().anyMatch(m -> m.startsAtMillis() >= segment.until())) {
+        return NOT_YET_STARTED;
+      }
+      return messages.isEmpty() ? NONE : EXPIRED;
+    }
+  }
+
+  /** The result of looking up the messages. */
+  enum CacheResult {
+    /** The messages were served from memory. */
+    HIT,
+    /** The messages were compiled, because they weren't compiled yet or were modified. */
+    MISS,
+    /** The messages were loaded again, because they were modified. */
+    RELOAD
+  }
+
+  static final String FILE_BACKEND = "file";
+  static final String GIT_BACKEND = "git";
+
+  private final Counter0 oversizedMessages;
+  private final Counter0 activatedMessages;
+  private final Counter0 expiredMessages;
+  private final Counter1<Outcome> requests;
+  private final Timer1<Outcome> requestLatency;
+  private final Counter1<CacheResult> cacheRequests;
+  private final Timer1<String> loadLatency;
+  private final Timer1<String> saveLatency;
+  private final Counter1<RefUpdate.Result> refUpdates;
+
+  private volatile long shownMessageSize;
+
+  @Inject
+  MessageMetrics(MetricMaker metricMaker) {
+    oversizedMessages =
+        metricMaker.newCounter(
+            "message/oversized",
+            new Description("Messages not loaded because they exceed the maximum message size")
+                .setRate()
+                .setUnit("messages"));
+    activatedMessages =
+        metricMaker.newCounter(
+            "message/activated",
+            new Description("Messages that started to be shown").setRate().setUnit("messages"));
+    expiredMessages =
+        metricMaker.newCounter(
+            "message/expired",
+            new Description("Messages that stopped being shown because they expired")
+                .setRate()
+                .setUnit("messages"));
+
+    Field<Outcome> outcome =
+        Field.ofEnum(Outcome.class, "outcome", Field.ignoreMetadata())
+            .description("The outcome of the request.")
+            .build();
+    requests =
+        metricMaker.newCounter(
+            "get/count",
+            new Description("Requests for the message").setRate().setUnit("requests"),
+            outcome);
+    requestLatency =
+        metricMaker.newTimer(
+            "get/latency",
+            new Description("Time taken to answer a request for the message")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            outcome);
+    cacheRequests =
+        metricMaker.newCounter(
+            "cache/requests",
+            new Description("Lookups of the messages").setRate().setUnit("lookups"),
+            Field.ofEnum(CacheResult.class, "result", Field.ignoreMetadata())
+                .description("Whether the messages were served from memory.")
+                .build());
+
+    Field<String> backend =
+        Field.ofString("backend", Field.ignoreMetadata())
+            .description("The message store, file or git.")
+            .build();
+    loadLatency =
+        metricMaker.newTimer(
+            "store/load_latency",
+            new Description("Time taken to load the messages from the message store")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            backend);
+    saveLatency =
+        metricMaker.newTimer(
+            "store/save_latency",
+            new Description("Time taken to save the messages to the message store")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            backend);
+    refUpdates =
+        metricMaker.newCounter(
+            "store/ref_update_result",
+            new Description("Results of updating the branch holding the messages")
+                .setRate()
+                .setUnit("updates"),
+            Field.ofEnum(RefUpdate.Result.class, "result", Field.ignoreMetadata())
+                .description("The result of the ref update.")
+                .build());
+
+    metricMaker.newCallbackMetric(
+        "message/size",
+        Long.class,
+        new Description("Size of the content of the shown message")
+            .setGauge()
+            .setUnit(Units.BYTES),
+        () -> shownMessageSize);
+  }
+
+  void incrementOversizedMessages() {
+    oversizedMessages.increment();
+  }
+
+  void incrementActivatedMessages() {
+    activatedMessages.increment();
+  }
+
+  void incrementExpiredMessages() {
+    expiredMessages.increment();
+  }
+
+  /** Records a request for the message, which started at the given {@link System#nanoTime()}. */
+  void recordRequest(Outcome outcome, long startNanos) {
+    requests.increment(outcome);
+    requestLatency.record(outcome, System.nanoTime() - startNanos, NANOSECONDS);
+  }
+
+  void incrementCacheRequests(CacheResult result) {
+    cacheRequests.increment(result);
+  }
+
+  Timer1.Context<String> startLoad(String backend) {
+    return loadLatency.start(backend);
+  }
+
+  Timer1.Context<String> startSave(String backend) {
+    return saveLatency.start(backend);
+  }
+
+  void incrementRefUpdates(RefUpdate.Result result) {
+    refUpdates.increment(result);
+  }
+
+  void setShownMessageSize(long bytes) {
+    shownMessageSize = bytes;
+  }
+}
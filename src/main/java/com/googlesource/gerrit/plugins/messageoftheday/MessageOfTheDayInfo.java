@@ -30,4 +30,7 @@ public class MessageOfTheDayInfo {
 
   /** The message in HTML-format. */
   public String html;
+
+  /** Version of the configuration of all messages, changes whenever any of them is modified. */
+  public String version;
 }
@@ -0,0 +1,212 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static java.util.Comparator.comparingLong;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.eclipse.jgit.util.SystemReader;
+
+/**
+ * Index of the configured messages by time.
+ *
+ * <p>The activation windows of all messages split the time line into segments during which the
+ * same messages are active. The segments are computed once, so that finding the active messages
+ * is a binary search over the segment boundaries, or a single comparison while the time stays
+ * within the last looked up segment.
+ */
+public final class MessageSchedule {
+  /**
+   * A period of time during which the same messages are active.
+   *
+   * @param from start of the segment, inclusive
+   * @param until end of the segment, exclusive
+   * @param active the active server wide messages, the most recently started message first
+   * @param scoped the project scoped messages of the schedule, of which those active during the
+   *     segment are shown
+   */
+  public record Segment(
+      long from, long until, ImmutableList<CompiledMessage> active, ProjectIndex scoped) {
+    public Segment(long from, long until, ImmutableList<CompiledMessage> active) {
+      this(from, until, active, ProjectIndex.EMPTY);
+    }
+
+    public boolean contains(long time) {
+      return from <= time && time < until;
+    }
+
+    /** Returns the message to show during this segment, {@code null} if there is none. */
+    @Nullable
+    public CompiledMessage message() {
+      return active.isEmpty() ? null : active.get(0);
+    }
+
+    /**
+     * Returns the message to show for the project during this segment, {@code null} if there is
+     * none. Of the server wide and the project scoped message, the one that started more recently
+     * is shown, the project scoped message if both started at the same time.
+     */
+    @Nullable
+    public CompiledMessage message(String project) {
+      CompiledMessage serverWide = message();
+      CompiledMessage forProject = scoped.lookup(project, from);
+      if (forProject == null
+          || (serverWide != null && serverWide.startsAtMillis() > forProject.startsAtMillis())) {
+        return serverWide;
+      }
+      return forProject;
+    }
+
+    /**
+     * Returns the entity tag of the message shown for the project during this segment, or of the
+     * server wide message if the project is {@code null}.
+     */
+    public String eTag(@Nullable String project) {
+      CompiledMessage shown = project != null ? message(project) : message();
+      return shown != null ? shown.eTag(from, until) : GetMessage.NO_MESSAGE_ETAG;
+    }
+  }
+
+  /**
+   * Compiles all messages of the configured message into a schedule.
+   *
+   * <p>Messages restricted to other hosts are left out.
+   */
+  public static MessageSchedule compile(ConfiguredMessage configuredMessage) {
+    return compile(configuredMessage, SystemReader.getInstance().getHostname());
+  }
+
+  static MessageSchedule compile(ConfiguredMessage configuredMessage, String host) {
+    List<CompiledMessage> messages = new ArrayList<>();
+    Map<CompiledMessage, ImmutableList<String>> projects = new HashMap<>();
+    String version = configuredMessage.version();
+    for (Map.Entry<String, ConfiguredMessage.Settings> e :
+        configuredMessage.settings().entrySet()) {
+      MessageContent content = configuredMessage.contents().get(e.getKey());
+      ConfiguredMessage.Settings settings = e.getValue();
+      if (content == null || !isShownOn(settings, host)) {
+        continue;
+      }
+      CompiledMessage.compile(
+              e.getKey(), settings.startsAt(), settings.expiresAt(), content, version)
+          .ifPresent(
+              m -> {
+                messages.add(m);
+                projects.put(m, settings.projects());
+              });
+    }
+    return new MessageSchedule(messages, projects);
+  }
+
+  private static boolean isShownOn(ConfiguredMessage.Settings settings, String host) {
+    return settings.hosts().isEmpty()
+        || settings.hosts().stream().anyMatch(h -> h.equalsIgnoreCase(host));
+  }
+
+  private final ImmutableList<CompiledMessage> serverWide;
+  private final ProjectIndex scoped;
+  private final long[] boundaries;
+  private final Segment[] segments;
+
+  private volatile Segment last;
+
+  private MessageSchedule(
+      List<CompiledMessage> messages, Map<CompiledMessage, ImmutableList<String>> projects) {
+    TreeSet<Long> times = new TreeSet<>();
+    for (CompiledMessage message : messages) {
+      // Messages without a start are active from the first segment on.
+      if (message.startsAtMillis() != Long.MIN_VALUE) {
+        times.add(message.startsAtMillis());
+      }
+      times.add(endOf(message));
+    }
+    boundaries = times.stream().mapToLong(Long::longValue).toArray();
+
+    serverWide =
+        messages.stream()
+            .filter(m -> projects.get(m).isEmpty())
+            .collect(ImmutableList.toImmutableList());
+    scoped =
+        ProjectIndex.build(
+            messages.stream()
+                .filter(m -> !projects.get(m).isEmpty())
+                .sorted(comparingLong(CompiledMessage::startsAtMillis).reversed())
+                .toList(),
+            projects);
+
+    // segments[i] spans from boundaries[i - 1] until boundaries[i].
+    segments = new Segment[boundaries.length + 1];
+    for (int i = 0; i < segments.length; i++) {
+      long from = i == 0 ? Long.MIN_VALUE : boundaries[i - 1];
+      long until = i == boundaries.length ? Long.MAX_VALUE : boundaries[i];
+      segments[i] = new Segment(from, until, activeAt(serverWide, from), scoped);
+    }
+    last = segments[0];
+  }
+
+  /** Returns the segment containing the given time. */
+  public Segment at(long time) {
+    Segment segment = last;
+    if (segment.contains(time)) {
+      return segment;
+    }
+    int pos = Arrays.binarySearch(boundaries, time);
+    segment = segments[pos >= 0 ? pos + 1 : -pos - 1];
+    last = segment;
+    return segment;
+  }
+
+  /** Returns all scheduled messages, ordered by their start. */
+  public ImmutableList<CompiledMessage> messages() {
+    return Stream.concat(serverWide.stream(), scoped.messages().stream())
+        .sorted(comparingLong(CompiledMessage::startsAtMillis))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * Returns the messages shown for the project, or server wide if it is {@code null}, no matter
+   * when they are active.
+   */
+  ImmutableList<CompiledMessage> messagesFor(@Nullable String project) {
+    if (project == null) {
+      return serverWide;
+    }
+    return ImmutableList.<CompiledMessage>builder()
+        .addAll(serverWide)
+        .addAll(scoped.matching(project))
+        .build();
+  }
+
+  private static ImmutableList<CompiledMessage> activeAt(
+      List<CompiledMessage> messages, long time) {
+    return messages.stream()
+        .filter(m -> m.startsAtMillis() <= time && time < endOf(m))
+        .sorted(comparingLong(CompiledMessage::startsAtMillis).reversed())
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  private static long endOf(CompiledMessage message) {
+    // The message is shown up to and including its expiry.
+    return message.expiresAtMillis() + 1;
+  }
+}
@@ -14,8 +14,34 @@
 
 package com.googlesource.gerrit.plugins.messageoftheday;
 
+import com.google.gerrit.common.Nullable;
+
 public interface MessageStore {
   ConfiguredMessage getConfiguredMessage() throws MessageStoreException;
 
-  void saveConfiguredMessage(ConfiguredMessage message) throws MessageStoreException;
+  /**
+   * Saves a message which was created by updating another message.
+   *
+   * <p>If the stored message was modified since {@code base} was read, the modifications are
+   * merged with the update as long as they don't touch the same keys or message contents.
+   *
+   * @param base the message the update is based on
+   * @param message the updated message
+   * @param expectedVersion the version the stored message must have, checked against the stored
+   *     message rather than against {@code base}, {@code null} to save the update regardless
+   * @throws MessageStoreConflictException if the stored message was modified since {@code base}
+   *     was read, in a way conflicting with the update, or doesn't have the expected version
+   */
+  void saveConfiguredMessage(
+      ConfiguredMessage base, ConfiguredMessage message, @Nullable String expectedVersion)
+      throws MessageStoreException;
+
+  default void saveConfiguredMessage(ConfiguredMessage base, ConfiguredMessage message)
+      throws MessageStoreException {
+    saveConfiguredMessage(base, message, null);
+  }
+
+  default void saveConfiguredMessage(ConfiguredMessage message) throws MessageStoreException {
+    saveConfiguredMessage(getConfiguredMessage(), message);
+  }
 }
@@ -0,0 +1,127 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.restapi.BinaryResult;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Clients waiting for the shown message to change.
+ *
+ * <p>Waiting clients don't hold a thread, their requests are suspended until a new message is
+ * published. Each client watches either the server wide message or the message shown for a
+ * project, and is only answered when that message changes.
+ */
+@Singleton
+public class MessageWatchers {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /**
+   * A suspended request of a client knowing the message with the given entity tag.
+   *
+   * @param project the project for which the client watches the shown message, {@code null} for
+   *     the server wide message
+   */
+  record Watcher(AsyncContext context, @Nullable String project, String eTag) {}
+
+  private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+
+  @Nullable
+  private static CompiledMessage messageOf(
+      MessageSchedule.Segment segment, @Nullable String project) {
+    return project != null ? segment.message(project) : segment.message();
+  }
+
+  Watcher add(AsyncContext context, @Nullable String project, String eTag) {
+    Watcher watcher = new Watcher(context, project, eTag);
+    watchers.add(watcher);
+    return watcher;
+  }
+
+  /** Removes the watcher, returns {@code false} if it was already answered. */
+  boolean remove(Watcher watcher) {
+    return watchers.remove(watcher);
+  }
+
+  /** Sends the message of the segment to all clients which don't know it yet. */
+  void publish(MessageSchedule.Segment segment) {
+    String serverWideETag = segment.eTag(null);
+    Map<String, String> projectETags = new HashMap<>();
+    for (Watcher watcher : watchers) {
+      String eTag =
+          watcher.project() != null
+              ? projectETags.computeIfAbsent(watcher.project(), segment::eTag)
+              : serverWideETag;
+      if (!watcher.eTag().equals(eTag)) {
+        answer(watcher, segment);
+      }
+    }
+  }
+
+  /** Sends the message of the segment to the client, unless it was already answered. */
+  void answer(Watcher watcher, MessageSchedule.Segment segment) {
+    if (!remove(watcher)) {
+      return;
+    }
+    try {
+      write((HttpServletResponse) watcher.context().getResponse(), segment, watcher.project());
+    } catch (IOException e) {
+      logger.atFine().withCause(e).log("Couldn't send message to watching client");
+    } finally {
+      watcher.context().complete();
+    }
+  }
+
+  /**
+   * Writes the message shown for the project during the segment to the response.
+   *
+   * <p>The {@code max-age} tells the client for how long it may show the message without asking
+   * the server again, i.e. until the end of the segment.
+   */
+  static void write(
+      HttpServletResponse res, MessageSchedule.Segment segment, @Nullable String project)
+      throws IOException {
+    CompiledMessage message = messageOf(segment, project);
+    long maxAgeSeconds = Math.max(0, MILLISECONDS.toSeconds(segment.until() - TimeUtil.nowMs()));
+    res.setHeader("Cache-Control", "private, max-age=" + maxAgeSeconds);
+    res.setHeader("ETag", segment.eTag(project));
+    if (message == null) {
+      res.setStatus(HttpServletResponse.SC_NO_CONTENT);
+      return;
+    }
+    BinaryResult body = message.toBinaryResult();
+    res.setStatus(HttpServletResponse.SC_OK);
+    res.setContentType(body.getContentType());
+    res.setCharacterEncoding(body.getCharacterEncoding().name());
+    res.setContentLength((int) body.getContentLength());
+    body.writeTo(res.getOutputStream());
+  }
+
+  int size() {
+    return watchers.size();
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import java.util.List;
+import java.util.Map;
+
+public class MessagesInput {
+  /** The messages to create or update, by message ID. */
+  public Map<String, MessageUpdate> messages;
+
+  /** The IDs of the messages to delete. */
+  public List<String> delete;
+
+  /**
+   * The version of the messages the update is based on, as returned by GET. If set, the update is
+   * rejected if the messages were modified since.
+   */
+  public String expectedVersion;
+
+  /** The modification of a message. Fields which aren't set are left unchanged. */
+  public static class MessageUpdate {
+    public String message;
+
+    /** The start of the message, an empty string to show it right away. */
+    public String startsAt;
+
+    public String expiresAt;
+
+    /** The project patterns to show the message for, an empty list to show it server wide. */
+    public List<String> projects;
+
+    /** The hosts to show the message on, an empty list to show it on all hosts. */
+    public List<String> hosts;
+  }
+}
@@ -15,17 +15,28 @@
 package com.googlesource.gerrit.plugins.messageoftheday;
 
 import static com.google.gerrit.server.config.ConfigResource.CONFIG_KIND;
+import static com.google.gerrit.server.project.ProjectResource.PROJECT_KIND;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.google.gerrit.extensions.annotations.Exports;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.config.CapabilityDefinition;
 import com.google.gerrit.extensions.restapi.RestApiModule;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.PluginConfigFactory;
-import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
 
-class Module extends AbstractModule {
+class Module extends LifecycleModule {
   private static final String GIT_REPOSITORY = "gitRepository";
+  private static final String MAX_MESSAGE_SIZE = "maxMessageSize";
+  private static final long DEFAULT_MAX_MESSAGE_SIZE = 256 * 1024;
+  private static final String POLL_INTERVAL = "pollInterval";
+  private static final long DEFAULT_POLL_INTERVAL_SECONDS = 5;
+
   private final PluginConfigFactory cfg;
   private final String pluginName;
 
@@ -40,12 +51,15 @@ class Module extends AbstractModule {
     bind(CapabilityDefinition.class)
         .annotatedWith(Exports.named(UpdateBannerCapability.NAME))
         .to(UpdateBannerCapability.class);
+    listener().to(MessageActivationTimer.class);
     install(
         new RestApiModule() {
           @Override
           protected void configure() {
             get(CONFIG_KIND, "message").to(GetMessage.class);
+            get(PROJECT_KIND, "message").to(GetProjectMessage.class);
             post(CONFIG_KIND, "message").to(SetMessage.class);
+            post(CONFIG_KIND, "messages").to(SetMessages.class);
           }
         });
     String configGit = cfg.getFromGerritConfig(pluginName).getString(GIT_REPOSITORY);
@@ -55,4 +69,21 @@ class Module extends AbstractModule {
       install(new FileBasedModule());
     }
   }
+
+  @Provides
+  @Singleton
+  @MaxMessageSize
+  long provideMaxMessageSize() {
+    return cfg.getFromGerritConfig(pluginName).getLong(MAX_MESSAGE_SIZE, DEFAULT_MAX_MESSAGE_SIZE);
+  }
+
+  @Provides
+  @Singleton
+  @PollInterval
+  long providePollInterval() {
+    return ConfigUtil.getTimeUnit(
+        cfg.getFromGerritConfig(pluginName).getString(POLL_INTERVAL, ""),
+        SECONDS.toMillis(DEFAULT_POLL_INTERVAL_SECONDS),
+        MILLISECONDS);
+  }
 }
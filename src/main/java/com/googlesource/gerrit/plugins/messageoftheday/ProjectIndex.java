@@ -0,0 +1,149 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the project scoped messages by project name.
+ *
+ * <p>The project patterns of all messages are kept in a trie, so that finding the messages of a
+ * project walks the characters of its name once, no matter how many patterns are configured for
+ * other projects. The index is built once for all messages, and the activation window of the
+ * messages found for a project is checked when looking them up: on each node along the name, the
+ * messages with a pattern ending there are checked in the order of preference until an active one
+ * is found. The cost of a lookup thus grows with the number of messages matching the project.
+ *
+ * <p>A pattern ending with {@code *} matches all projects whose name starts with the part before
+ * it, e.g. {@code android/*} matches all projects below {@code android/}. Other patterns match the
+ * project with exactly that name.
+ */
+public final class ProjectIndex {
+  static final ProjectIndex EMPTY = new ProjectIndex(ImmutableList.of(), new Node());
+
+  private static final int NONE = Integer.MAX_VALUE;
+  private static final int[] NO_RANKS = new int[0];
+
+  /**
+   * Builds the index.
+   *
+   * @param messages the messages, in the order of preference
+   * @param projects the project patterns of the messages
+   */
+  static ProjectIndex build(
+      List<CompiledMessage> messages, Map<CompiledMessage, ImmutableList<String>> projects) {
+    if (messages.isEmpty()) {
+      return EMPTY;
+    }
+    Node root = new Node();
+    for (int rank = 0; rank < messages.size(); rank++) {
+      for (String pattern : projects.get(messages.get(rank))) {
+        boolean prefix = pattern.endsWith("*");
+        String name = prefix ? pattern.substring(0, pattern.length() - 1) : pattern;
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+          node = node.children.computeIfAbsent(name.charAt(i), c -> new Node());
+        }
+        if (prefix) {
+          node.prefixRanks = append(node.prefixRanks, rank);
+        } else {
+          node.exactRanks = append(node.exactRanks, rank);
+        }
+      }
+    }
+    return new ProjectIndex(ImmutableList.copyOf(messages), root);
+  }
+
+  /** Appends the rank, ranks are added in ascending order. */
+  private static int[] append(int[] ranks, int rank) {
+    if (ranks.length > 0 && ranks[ranks.length - 1] == rank) {
+      return ranks;
+    }
+    int[] result = Arrays.copyOf(ranks, ranks.length + 1);
+    result[ranks.length] = rank;
+    return result;
+  }
+
+  private final ImmutableList<CompiledMessage> messages;
+  private final Node root;
+
+  private ProjectIndex(ImmutableList<CompiledMessage> messages, Node root) {
+    this.messages = messages;
+    this.root = root;
+  }
+
+  /**
+   * Returns the preferred message for the project which is active at the given time, {@code null}
+   * if there is none.
+   */
+  @Nullable
+  CompiledMessage lookup(String project, long time) {
+    int best = NONE;
+    Node node = root;
+    for (int i = 0; node != null; i++) {
+      best = firstActive(node.prefixRanks, best, time);
+      if (i == project.length()) {
+        best = firstActive(node.exactRanks, best, time);
+        break;
+      }
+      node = node.children.get(project.charAt(i));
+    }
+    return best != NONE ? messages.get(best) : null;
+  }
+
+  /** Returns the messages for the project, no matter when they are active. */
+  ImmutableList<CompiledMessage> matching(String project) {
+    BitSet ranks = new BitSet(messages.size());
+    Node node = root;
+    for (int i = 0; node != null; i++) {
+      Arrays.stream(node.prefixRanks).forEach(ranks::set);
+      if (i == project.length()) {
+        Arrays.stream(node.exactRanks).forEach(ranks::set);
+        break;
+      }
+      node = node.children.get(project.charAt(i));
+    }
+    return ranks.stream().mapToObj(messages::get).collect(ImmutableList.toImmutableList());
+  }
+
+  ImmutableList<CompiledMessage> messages() {
+    return messages;
+  }
+
+  /** Returns the better of the rank and the first rank of an active message. */
+  private int firstActive(int[] ranks, int best, long time) {
+    for (int rank : ranks) {
+      if (rank >= best) {
+        break;
+      }
+      if (messages.get(rank).isActive(time)) {
+        return rank;
+      }
+    }
+    return best;
+  }
+
+  private static final class Node {
+    final Map<Character, Node> children = new HashMap<>();
+    int[] prefixRanks = NO_RANKS;
+    int[] exactRanks = NO_RANKS;
+  }
+}
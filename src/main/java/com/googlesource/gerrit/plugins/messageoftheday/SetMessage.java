@@ -15,6 +15,7 @@
 package com.googlesource.gerrit.plugins.messageoftheday;
 
 import static com.googlesource.gerrit.plugins.messageoftheday.GetMessage.DATE_FORMAT;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Strings;
 import com.google.common.flogger.FluentLogger;
@@ -30,10 +31,12 @@ import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import java.time.DateTimeException;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
+import java.util.regex.Pattern;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.PersonIdent;
@@ -47,22 +50,29 @@ public class SetMessage implements RestModifyView<ConfigResource, MessageInput>
   private static final String INPUT_DATE_FORMAT_PATTERN = "MM/dd/yyyy, hh:mm a [O][z]";
   private static final DateTimeFormatter INPUT_DATE_FORMAT =
       DateTimeFormatter.ofPattern(INPUT_DATE_FORMAT_PATTERN, Locale.ENGLISH);
+  private static final Pattern MESSAGE_ID = Pattern.compile("[A-Za-z0-9._-]+");
 
   private final MessageStore messageStore;
   private final ZoneId serverZoneId;
   private final PermissionBackend permissionBackend;
   private final UpdateBannerPermission permission;
+  private final long maxMessageSize;
+  private final MessageActivationTimer activationTimer;
 
   @Inject
   public SetMessage(
       MessageStore messageStore,
       @GerritPersonIdent Provider<PersonIdent> serverIdent,
       PermissionBackend permissionBackend,
-      UpdateBannerPermission permission) {
+      UpdateBannerPermission permission,
+      @MaxMessageSize long maxMessageSize,
+      MessageActivationTimer activationTimer) {
     this.messageStore = messageStore;
     this.serverZoneId = serverIdent.get().getZoneId();
     this.permission = permission;
     this.permissionBackend = permissionBackend;
+    this.maxMessageSize = maxMessageSize;
+    this.activationTimer = activationTimer;
   }
 
   @Override
@@ -78,6 +88,7 @@ public class SetMessage implements RestModifyView<ConfigResource, MessageInput>
     if (input.message == null) {
       throw new BadRequestException("message is required");
     }
+    checkMessageSize(input.message, maxMessageSize);
 
     ConfiguredMessage configuredMessage;
     try {
@@ -86,27 +97,22 @@ public class SetMessage implements RestModifyView<ConfigResource, MessageInput>
       throw new UnprocessableEntityException(e.getMessage(), e);
     }
 
+    // Edit a copy, the configured message is shared with readers.
     Config cfg = configuredMessage.config();
 
     String id = cfg.getString(SECTION_MESSAGE, null, KEY_ID);
     if (Strings.isNullOrEmpty(id)) {
       logger.atInfo().log("'id' is not configured in the plugin cfg. Choosing a default id.");
-      cfg.setString(SECTION_MESSAGE, null, KEY_ID, "default");
+      id = "default";
+      cfg.setString(SECTION_MESSAGE, null, KEY_ID, id);
     }
 
     if (input.expiresAt != null) {
-      ZonedDateTime time;
-      try {
-        time =
-            ZonedDateTime.parse(input.expiresAt, INPUT_DATE_FORMAT)
-                .withZoneSameInstant(serverZoneId);
-      } catch (IllegalArgumentException e) {
-        throw new BadRequestException(
-            "Invalid value for expires_at. It must be provided in '"
-                + INPUT_DATE_FORMAT_PATTERN
-                + "' format");
-      }
-      cfg.setString(SECTION_MESSAGE, null, KEY_EXPIRES_AT, time.format(DATE_FORMAT));
+      cfg.setString(
+          SECTION_MESSAGE,
+          null,
+          KEY_EXPIRES_AT,
+          parseInputDate(input.expiresAt, serverZoneId, "expires_at"));
     } else {
       String expiredAt = cfg.getString(SECTION_MESSAGE, null, KEY_EXPIRES_AT);
       if (expiredAt == null) {
@@ -117,11 +123,68 @@ public class SetMessage implements RestModifyView<ConfigResource, MessageInput>
     }
 
     try {
-      messageStore.saveConfiguredMessage(new ConfiguredMessage(cfg, input.message));
+      messageStore.saveConfiguredMessage(
+          configuredMessage,
+          configuredMessage.withContent(cfg, id, input.message),
+          input.expectedVersion);
+    } catch (MessageStoreConflictException e) {
+      throw new ResourceConflictException(e.getMessage(), e);
     } catch (MessageStoreException e) {
       throw new UnprocessableEntityException(e.getMessage(), e);
     }
+    return shownMessage(activationTimer);
+  }
+
+  /**
+   * Checks that a message ID given in the request is safe to use as name of the HTML file and of
+   * the config subsection. The HTML files are stored in a flat directory, or in the root tree of
+   * the config repository. IDs read from the config are used as they are.
+   */
+  static void checkMessageId(String id) throws BadRequestException {
+    if (!MESSAGE_ID.matcher(id).matches() || id.contains("..")) {
+      throw new BadRequestException(
+          "invalid message ID "
+              + id
+              + ", it may only contain letters, digits, '.', '_' and '-', and no '..'");
+    }
+  }
+
+  static void checkMessageSize(String message, long maxMessageSize) throws BadRequestException {
+    if (message.getBytes(UTF_8).length > maxMessageSize) {
+      throw new BadRequestException(
+          "message exceeds the maximum size of " + maxMessageSize + " bytes");
+    }
+  }
+
+  /** Converts a date given in the REST API input to the format of the config. */
+  static String parseInputDate(String value, ZoneId serverZoneId, String field)
+      throws BadRequestException {
+    try {
+      return ZonedDateTime.parse(value, INPUT_DATE_FORMAT)
+          .withZoneSameInstant(serverZoneId)
+          .format(DATE_FORMAT);
+    } catch (DateTimeException e) {
+      throw new BadRequestException(
+          "Invalid value for "
+              + field
+              + ". It must be provided in '"
+              + INPUT_DATE_FORMAT_PATTERN
+              + "' format");
+    }
+  }
 
-    return Response.ok();
+  /**
+   * Publishes the updated messages right away and returns the message shown now, which isn't
+   * necessarily the updated one.
+   */
+  static Response<?> shownMessage(MessageActivationTimer activationTimer)
+      throws UnprocessableEntityException {
+    CompiledMessage shown;
+    try {
+      shown = activationTimer.current().message();
+    } catch (MessageStoreException e) {
+      throw new UnprocessableEntityException(e.getMessage(), e);
+    }
+    return shown != null ? Response.ok(shown.toBinaryResult()) : Response.none();
   }
 }
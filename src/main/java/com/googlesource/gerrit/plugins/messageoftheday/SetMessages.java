@@ -0,0 +1,220 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_EXPIRES_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_HOST;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_PROJECT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_STARTS_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+import static com.googlesource.gerrit.plugins.messageoftheday.SetMessage.checkMessageId;
+import static com.googlesource.gerrit.plugins.messageoftheday.SetMessage.checkMessageSize;
+import static com.googlesource.gerrit.plugins.messageoftheday.SetMessage.parseInputDate;
+import static com.googlesource.gerrit.plugins.messageoftheday.SetMessage.shownMessage;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
+import com.google.gerrit.server.GerritPersonIdent;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.googlesource.gerrit.plugins.messageoftheday.MessagesInput.MessageUpdate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.PersonIdent;
+
+/**
+ * Creates, updates and deletes several messages at once.
+ *
+ * <p>All modifications are saved together, as a single commit when the messages are stored in a
+ * Git repository, so that they become visible at the same time and the caches are only refreshed
+ * once.
+ */
+public class SetMessages implements RestModifyView<ConfigResource, MessagesInput> {
+  private final MessageStore messageStore;
+  private final ZoneId serverZoneId;
+  private final PermissionBackend permissionBackend;
+  private final UpdateBannerPermission permission;
+  private final long maxMessageSize;
+  private final MessageActivationTimer activationTimer;
+
+  @Inject
+  SetMessages(
+      MessageStore messageStore,
+      @GerritPersonIdent Provider<PersonIdent> serverIdent,
+      PermissionBackend permissionBackend,
+      UpdateBannerPermission permission,
+      @MaxMessageSize long maxMessageSize,
+      MessageActivationTimer activationTimer) {
+    this.messageStore = messageStore;
+    this.serverZoneId = serverIdent.get().getZoneId();
+    this.permissionBackend = permissionBackend;
+    this.permission = permission;
+    this.maxMessageSize = maxMessageSize;
+    this.activationTimer = activationTimer;
+  }
+
+  @Override
+  public Response<?> apply(ConfigResource resource, MessagesInput input)
+      throws AuthException,
+          BadRequestException,
+          ResourceConflictException,
+          PermissionBackendException,
+          UnprocessableEntityException {
+    permissionBackend.currentUser().check(permission);
+
+    Map<String, MessageUpdate> updates =
+        input.messages != null ? input.messages : ImmutableMap.of();
+    List<String> deletions = input.delete != null ? input.delete : ImmutableList.of();
+    if (updates.isEmpty() && deletions.isEmpty()) {
+      throw new BadRequestException("messages or delete is required");
+    }
+    for (Map.Entry<String, MessageUpdate> e : updates.entrySet()) {
+      if (Strings.isNullOrEmpty(e.getKey()) || e.getValue() == null) {
+        throw new BadRequestException("invalid message update");
+      }
+      if (deletions.contains(e.getKey())) {
+        throw new BadRequestException("message " + e.getKey() + " is both updated and deleted");
+      }
+      if (e.getValue().message != null) {
+        checkMessageSize(e.getValue().message, maxMessageSize);
+      }
+      checkScope(e.getValue().projects, "projects");
+      checkScope(e.getValue().hosts, "hosts");
+    }
+
+    ConfiguredMessage configuredMessage;
+    try {
+      configuredMessage = messageStore.getConfiguredMessage();
+    } catch (MessageStoreException e) {
+      throw new UnprocessableEntityException(e.getMessage(), e);
+    }
+    for (String id : updates.keySet()) {
+      checkRequestedMessageId(id, configuredMessage);
+    }
+    for (String id : deletions) {
+      checkRequestedMessageId(Strings.nullToEmpty(id), configuredMessage);
+    }
+
+    // Edit a copy, the configured message is shared with readers.
+    Config cfg = configuredMessage.config();
+    Map<String, MessageContent> contents = new HashMap<>(configuredMessage.contents());
+
+    for (String id : deletions) {
+      if (!configuredMessage.settings().containsKey(id)) {
+        throw new UnprocessableEntityException("message " + id + " doesn't exist");
+      }
+      cfg.unsetSection(SECTION_MESSAGE, configuredMessage.subsection(id));
+      contents.remove(id);
+    }
+
+    for (Map.Entry<String, MessageUpdate> e : updates.entrySet()) {
+      String id = e.getKey();
+      MessageUpdate update = e.getValue();
+      String subsection = configuredMessage.subsection(id);
+      boolean exists = configuredMessage.settings().containsKey(id);
+      if (update.message != null) {
+        contents.put(id, MessageContent.of(update.message));
+      } else if (!contents.containsKey(id)) {
+        throw new UnprocessableEntityException(
+            exists
+                ? "message is required for message " + id + ", it has no content"
+                : "message is required for new message " + id);
+      }
+      if (update.startsAt != null) {
+        if (update.startsAt.isEmpty()) {
+          cfg.unset(SECTION_MESSAGE, subsection, KEY_STARTS_AT);
+        } else {
+          cfg.setString(
+              SECTION_MESSAGE,
+              subsection,
+              KEY_STARTS_AT,
+              parseInputDate(update.startsAt, serverZoneId, "starts_at"));
+        }
+      }
+      if (update.expiresAt != null) {
+        cfg.setString(
+            SECTION_MESSAGE,
+            subsection,
+            KEY_EXPIRES_AT,
+            parseInputDate(update.expiresAt, serverZoneId, "expires_at"));
+      } else if (cfg.getString(SECTION_MESSAGE, subsection, KEY_EXPIRES_AT) == null) {
+        throw new UnprocessableEntityException(
+            exists
+                ? "expires_at is required for message " + id + ", it has no expiry configured"
+                : "expires_at is required for new message " + id);
+      }
+      setScope(cfg, subsection, KEY_PROJECT, update.projects);
+      setScope(cfg, subsection, KEY_HOST, update.hosts);
+    }
+
+    try {
+      messageStore.saveConfiguredMessage(
+          configuredMessage,
+          new ConfiguredMessage(cfg, ImmutableMap.copyOf(contents)),
+          input.expectedVersion);
+    } catch (MessageStoreConflictException e) {
+      throw new ResourceConflictException(e.getMessage(), e);
+    } catch (MessageStoreException e) {
+      throw new UnprocessableEntityException(e.getMessage(), e);
+    }
+    return shownMessage(activationTimer);
+  }
+
+  private static void checkScope(@Nullable List<String> values, String field)
+      throws BadRequestException {
+    if (values != null && values.stream().anyMatch(v -> Strings.nullToEmpty(v).isBlank())) {
+      throw new BadRequestException(field + " must not contain empty values");
+    }
+  }
+
+  /** Sets the values of the key, leaves it unchanged if they are {@code null}. */
+  private static void setScope(
+      Config cfg, @Nullable String subsection, String key, @Nullable List<String> values) {
+    if (values == null) {
+      return;
+    }
+    if (values.isEmpty()) {
+      cfg.unset(SECTION_MESSAGE, subsection, key);
+    } else {
+      cfg.setStringList(SECTION_MESSAGE, subsection, key, values);
+    }
+  }
+
+  /**
+   * Checks the ID of a message to update or delete. Messages which exist already keep their ID, so
+   * that messages configured by hand with an ID which isn't a plain file name can still be updated
+   * or deleted.
+   */
+  private static void checkRequestedMessageId(String id, ConfiguredMessage configuredMessage)
+      throws BadRequestException {
+    if (!configuredMessage.settings().containsKey(id)) {
+      checkMessageId(id);
+    }
+  }
+}
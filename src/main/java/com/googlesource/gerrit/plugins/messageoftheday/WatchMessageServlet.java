@@ -0,0 +1,176 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.permissions.ProjectPermission;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Long-poll endpoint for clients that want to be notified when the shown message changes.
+ *
+ * <p>A client sends the entity tag of the message it knows in the {@code If-None-Match} header.
+ * If the shown message differs, it is returned right away. Otherwise the request is suspended
+ * until the shown message changes, or until the watch timeout expires, in which case {@code 304
+ * Not Modified} is returned and the client is expected to watch again.
+ *
+ * <p>With the {@code project} parameter, the client watches the message shown for that project,
+ * which may also be a project scoped message. Projects the user can't see are answered with {@code
+ * 404 Not Found}, like by the project message REST endpoint.
+ */
+@Singleton
+public class WatchMessageServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final String WATCH_TIMEOUT = "watchTimeout";
+  private static final long DEFAULT_WATCH_TIMEOUT_SECONDS = 50;
+
+  private final MessageActivationTimer activationTimer;
+  private final MessageWatchers watchers;
+  private final ProjectCache projectCache;
+  private final PermissionBackend permissionBackend;
+  private final long timeoutMillis;
+  private final AtomicBoolean warnedAsyncUnsupported = new AtomicBoolean();
+
+  @Inject
+  WatchMessageServlet(
+      MessageActivationTimer activationTimer,
+      MessageWatchers watchers,
+      ProjectCache projectCache,
+      PermissionBackend permissionBackend,
+      PluginConfigFactory cfg,
+      @PluginName String pluginName) {
+    this.activationTimer = activationTimer;
+    this.watchers = watchers;
+    this.projectCache = projectCache;
+    this.permissionBackend = permissionBackend;
+    this.timeoutMillis =
+        ConfigUtil.getTimeUnit(
+            cfg.getFromGerritConfig(pluginName).getString(WATCH_TIMEOUT, ""),
+            SECONDS.toMillis(DEFAULT_WATCH_TIMEOUT_SECONDS),
+            MILLISECONDS);
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    String eTag = req.getHeader("If-None-Match");
+    String project = req.getParameter("project");
+    MessageSchedule.Segment segment;
+    try {
+      if (project != null && !isVisible(project)) {
+        res.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+      segment = activationTimer.current();
+    } catch (PermissionBackendException | MessageStoreException e) {
+      res.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      return;
+    }
+    if (eTag == null || !eTag.equals(segment.eTag(project))) {
+      MessageWatchers.write(res, segment, project);
+      return;
+    }
+    if (!req.isAsyncSupported()) {
+      // The request can't be suspended, e.g. because a filter in front of the plugin doesn't
+      // support it. Don't hold a thread while waiting, but let the client ask again later.
+      if (warnedAsyncUnsupported.compareAndSet(false, true)) {
+        logger.atWarning().log(
+            "Requests can't be suspended, clients watching for message updates poll every %d"
+                + " seconds instead",
+            Math.max(1, MILLISECONDS.toSeconds(timeoutMillis)));
+      }
+      res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      res.setHeader("ETag", eTag);
+      res.setHeader(
+          "Retry-After", Long.toString(Math.max(1, MILLISECONDS.toSeconds(timeoutMillis))));
+      return;
+    }
+
+    AsyncContext context = req.startAsync();
+    context.setTimeout(timeoutMillis);
+    MessageWatchers.Watcher watcher = watchers.add(context, project, eTag);
+    context.addListener(new WatcherListener(watcher));
+
+    // The message may have changed before the watcher was added, in which case it missed the
+    // notification.
+    try {
+      segment = activationTimer.current();
+    } catch (MessageStoreException e) {
+      return;
+    }
+    if (!eTag.equals(segment.eTag(project))) {
+      watchers.answer(watcher, segment);
+    }
+  }
+
+  private boolean isVisible(String project) throws PermissionBackendException {
+    Project.NameKey name = Project.nameKey(project);
+    if (projectCache.get(name).filter(ProjectState::statePermitsRead).isEmpty()) {
+      return false;
+    }
+    return permissionBackend.currentUser().project(name).test(ProjectPermission.ACCESS);
+  }
+
+  private class WatcherListener implements AsyncListener {
+    private final MessageWatchers.Watcher watcher;
+
+    WatcherListener(MessageWatchers.Watcher watcher) {
+      this.watcher = watcher;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      if (watchers.remove(watcher)) {
+        HttpServletResponse res = (HttpServletResponse) event.getAsyncContext().getResponse();
+        res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        res.setHeader("ETag", watcher.eTag());
+        event.getAsyncContext().complete();
+      }
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      watchers.remove(watcher);
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      watchers.remove(watcher);
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+}
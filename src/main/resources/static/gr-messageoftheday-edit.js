@@ -16,6 +16,8 @@
  */
 import {htmlTemplate} from './gr-messageoftheday-edit_html.js';
 
+const JSON_PREFIX = ')]}\'';
+
 class GrMessageOfTheDayEdit extends Polymer.Element {
   static get is() {
     return 'gr-messageoftheday-edit';
@@ -38,50 +40,48 @@ class GrMessageOfTheDayEdit extends Polymer.Element {
         type: String,
         value: 'd',
       },
-      _can_update: {
-        type: Boolean,
-        value: false,
-      },
       _show_update_banner: {
         type: Boolean,
         value: false,
       },
+      // Version of the messages the edited message was fetched with.
+      _version: {
+        type: String,
+      },
+      _error: {
+        type: String,
+        value: '',
+      },
     };
   }
 
-  connectedCallback() {
-    super.connectedCallback();
-  }
-
-  ready() {
-    super.ready();
-    this._canUpdate();
-  }
-
-  _canUpdate() {
-    const endpoint = `/accounts/self/capabilities?q=messageoftheday-updateBanner`;
-    return this.plugin.restApi().get(endpoint).then(response => {
-      if (response && response['messageoftheday-updateBanner'] === true) {
-        this._can_update = true;
-        this._fetchMessage();
-      }
-    }).catch(error => {
-      console.error('Error checking updateBanner capability:', error);
-      this._can_update = false;
-    });
-  }
-
   _fetchMessage() {
-    return this.plugin.restApi().get("/config/server/messageoftheday~message").then(response => {
-      if (response) {
-        this._message = response.html;
-      } else {
+    // Bypass the browser cache, the version of a cached response may be
+    // outdated, which would make saving fail.
+    const url =
+      `${window.CANONICAL_PATH || ''}/config/server/messageoftheday~message`;
+    return fetch(url, {cache: 'no-store', credentials: 'same-origin'})
+      .then(response => {
+        if (!response.ok) {
+          throw new Error(`fetching message failed: ${response.status}`);
+        }
+        return response.text();
+      })
+      .then(text => {
+        const response = text ? JSON.parse(text.replace(JSON_PREFIX, '')) : null;
+        if (response) {
+          this._message = response.html;
+          this._version = response.version;
+        } else {
+          this._message = '';
+          this._version = undefined;
+        }
+      })
+      .catch(error => {
+        console.error('Error fetching message:', error);
         this._message = '';
-      }
-    }).catch(error => {
-      console.error('Error fetching message:', error);
-      this._message = '';
-    });
+        this._version = undefined;
+      });
   }
 
   _saveMessage() {
@@ -94,16 +94,52 @@ class GrMessageOfTheDayEdit extends Polymer.Element {
           this._expire_after_value, this._expire_after_unit);
     }
 
-    return this.plugin.restApi().post(endpoint, payload).then(
-        response => {
-          location.reload();
+    // Reject the update if another admin saved a message since it was
+    // fetched, rather than overwriting theirs.
+    if (this._version) {
+      payload.expected_version = this._version;
+    }
+
+    let failed;
+    return this.plugin.restApi()
+      .fetch('POST', endpoint, payload, response => failed = response)
+      .then(response => {
+        if (!response || !response.ok) {
+          throw failed || response;
+        }
+        return response.text();
+      })
+      .then(text => {
+        const message = text ? JSON.parse(text.replace(JSON_PREFIX, '')) : null;
+        this._closeDialog();
+        // The response is the message shown now. Let the banner show it in
+        // place, other tabs get it from the server.
+        document.dispatchEvent(new CustomEvent('messageoftheday-saved', {
+          detail: {message},
+        }));
+      })
+      .catch(error => {
+        if (error && error.status === 409) {
+          this._error =
+            'The message was changed by someone else, reload it to edit the ' +
+            'current message.';
+          return;
         }
-    ).catch(error => {
-      console.error('Error saving message:', error);
-    });
+        console.error('Error saving message:', error);
+        this._error = 'Saving the message failed.';
+      });
+  }
+
+  _reloadMessage() {
+    this._error = '';
+    this._fetchMessage();
   }
 
   _openDialog() {
+    // The component is only registered for users who can update the banner,
+    // the current message is fetched once they want to edit it.
+    this._error = '';
+    this._fetchMessage();
     if (!this.$.message_dialog_overlay.open) {
       this.$.message_dialog_overlay.showModal();
     }
@@ -59,6 +59,9 @@ export const htmlTemplate = Polymer.html`
     .value > * {
       margin: 0;
     }
+    .error {
+      color: var(--error-text-color);
+    }
     .icon-button {
       background: none;
       box-shadow: none;
@@ -67,16 +70,18 @@ export const htmlTemplate = Polymer.html`
     }
 
   </style>
-  <template is="dom-if" if="[[_can_update]]">
-    <md-icon-button class="icon-button" on-click="_openDialog">
-      <md-icon filled>campaign</md-icon>
-    </md-icon-button>
-  </template>
+  <md-icon-button class="icon-button" on-click="_openDialog">
+    <md-icon filled>campaign</md-icon>
+  </md-icon-button>
   <dialog id="message_dialog_overlay" tabindex="-1">
     <gr-dialog id="message_dialog" confirm-label="Save Message"
         on-confirm="_saveMessage" on-cancel="_closeDialog">
       <div class="header" slot="header">Set Banner Message</div>
       <div class="main" slot="main">
+        <section class="error" hidden$="[[!_error]]">
+          <span>[[_error]]</span>
+          <gr-button link on-click="_reloadMessage">Reload</gr-button>
+        </section>
         <section>
           <span class="title">Expire After:</span>
           <span class="value">
@@ -0,0 +1,47 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class CompiledMessageCacheTest {
+  @Test
+  public void countsOneLookupPerRequest() throws Exception {
+    MessageStore store = mock(MessageStore.class);
+    when(store.getConfiguredMessage())
+        .thenReturn(new ConfiguredMessage(new Config(), ImmutableMap.of()));
+    MessageMetrics metrics = mock(MessageMetrics.class);
+    CompiledMessageCache cache = new CompiledMessageCache(store, metrics);
+
+    // The first request compiles the messages when computing the entity tag.
+    MessageSchedule schedule = cache.get();
+    assertThat(cache.getForRequest()).isSameInstanceAs(schedule);
+    // The second request is served from memory.
+    cache.get();
+    cache.getForRequest();
+
+    verify(metrics).incrementCacheRequests(MessageMetrics.CacheResult.MISS);
+    verify(metrics).incrementCacheRequests(MessageMetrics.CacheResult.HIT);
+    verifyNoMoreInteractions(metrics);
+  }
+}
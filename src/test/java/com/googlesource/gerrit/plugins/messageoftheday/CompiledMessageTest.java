@@ -0,0 +1,97 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class CompiledMessageTest {
+  private static final String SECTION_MESSAGE = "message";
+  private static final String HTML_CONTENT = "<p>Hello World</p>";
+  private static final String VERSION = "1";
+
+  @Test
+  public void noMessageWithoutExpiresAt() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "hello");
+
+    assertThat(compile(config)).isEmpty();
+  }
+
+  @Test
+  public void activeWithinConfiguredWindow() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "hello");
+    config.setString(SECTION_MESSAGE, null, "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1200");
+
+    CompiledMessage message = compile(config).get();
+
+    assertThat(message.id()).isEqualTo("hello");
+    assertThat(message.isActive(millis("2026-03-01T09:59"))).isFalse();
+    assertThat(message.isActive(millis("2026-03-01T10:00"))).isTrue();
+    assertThat(message.isActive(millis("2026-03-01T12:00"))).isTrue();
+    assertThat(message.isActive(millis("2026-03-01T12:01"))).isFalse();
+  }
+
+  @Test
+  public void alwaysStartedWithoutStartsAt() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "hello");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1200");
+
+    CompiledMessage message = compile(config).get();
+
+    assertThat(message.startsAtMillis()).isEqualTo(Long.MIN_VALUE);
+    assertThat(message.isActive(millis("1970-01-01T00:00"))).isTrue();
+    assertThat(message.isActive(millis("2026-03-01T12:00"))).isTrue();
+    assertThat(message.eTag(Long.MIN_VALUE, Long.MAX_VALUE))
+        .isEqualTo(compile(config).get().eTag(Long.MIN_VALUE, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void contentIdIsGitBlobId() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "hello");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1200");
+
+    CompiledMessage message = compile(config).get();
+
+    assertThat(message.contentId()).isEqualTo("92f9a3de160337a5b33a4a04b06fb339f56d45ae");
+    assertThat(message.eTag(Long.MIN_VALUE, Long.MAX_VALUE))
+        .startsWith("\"" + message.contentId());
+  }
+
+  private static Optional<CompiledMessage> compile(Config config) {
+    return CompiledMessage.compile(
+        config.getString(SECTION_MESSAGE, null, "id"),
+        config.getString(SECTION_MESSAGE, null, "startsAt"),
+        config.getString(SECTION_MESSAGE, null, "expiresAt"),
+        MessageContent.of(HTML_CONTENT),
+        VERSION);
+  }
+
+  private static long millis(String localDateTime) {
+    return LocalDateTime.parse(localDateTime)
+        .atZone(ZoneId.systemDefault())
+        .toInstant()
+        .toEpochMilli();
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class ConfiguredMessageTest {
+  private static final String SECTION_MESSAGE = "message";
+
+  @Test
+  public void mergesModificationsOfDifferentKeys() throws Exception {
+    ConfiguredMessage base = new ConfiguredMessage(config("20260301:1200"), "<p>base</p>");
+    ConfiguredMessage ours = base.withContent(config("20260301:1200"), "hello", "<p>ours</p>");
+    Config theirsConfig = config("20260301:1200");
+    theirsConfig.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260302:1200");
+    ConfiguredMessage theirs = new ConfiguredMessage(theirsConfig, "<p>base</p>");
+
+    ConfiguredMessage merged = ConfiguredMessage.merge(base, ours, theirs);
+
+    assertThat(merged.message()).isEqualTo("<p>ours</p>");
+    assertThat(merged.config().getString(SECTION_MESSAGE, "maintenance", "expiresAt"))
+        .isEqualTo("20260302:1200");
+  }
+
+  @Test
+  public void rejectsConflictingModifications() {
+    ConfiguredMessage base = new ConfiguredMessage(config("20260301:1200"), "<p>base</p>");
+    ConfiguredMessage ours = new ConfiguredMessage(config("20260301:1300"), "<p>base</p>");
+    ConfiguredMessage theirs = new ConfiguredMessage(config("20260301:1400"), "<p>base</p>");
+
+    assertThrows(
+        MessageStoreConflictException.class, () -> ConfiguredMessage.merge(base, ours, theirs));
+  }
+
+  @Test
+  public void mergesDeletionOfMessage() throws Exception {
+    Config baseConfig = config("20260301:1200");
+    baseConfig.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260302:1200");
+    ConfiguredMessage base =
+        new ConfiguredMessage(baseConfig, "<p>base</p>")
+            .withContent(baseConfig, "maintenance", "<p>maintenance</p>");
+    Config oursConfig = base.config();
+    oursConfig.unsetSection(SECTION_MESSAGE, "maintenance");
+    ConfiguredMessage ours = new ConfiguredMessage(oursConfig, "<p>base</p>");
+    ConfiguredMessage theirs = base.withContent(base.config(), "hello", "<p>theirs</p>");
+
+    ConfiguredMessage merged = ConfiguredMessage.merge(base, ours, theirs);
+
+    assertThat(merged.settings().keySet()).containsExactly("hello");
+    assertThat(merged.contents().keySet()).containsExactly("hello");
+    assertThat(merged.message()).isEqualTo("<p>theirs</p>");
+  }
+
+  @Test
+  public void versionChangesWithContent() {
+    ConfiguredMessage message = new ConfiguredMessage(config("20260301:1200"), "<p>base</p>");
+
+    assertThat(message.withContent(message.config(), "hello", "<p>new</p>").version())
+        .isNotEqualTo(message.version());
+  }
+
+  @Test
+  public void isNotAffectedByModificationsOfConfig() {
+    Config config = config("20260301:1200");
+    ConfiguredMessage message = new ConfiguredMessage(config, "<p>base</p>");
+
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1300");
+    message.config().setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1400");
+
+    assertThat(message.settings().get("hello").expiresAt()).isEqualTo("20260301:1200");
+    assertThat(message.config().getString(SECTION_MESSAGE, null, "expiresAt"))
+        .isEqualTo("20260301:1200");
+  }
+
+  private static Config config(String expiresAt) {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "hello");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", expiresAt);
+    return config;
+  }
+}
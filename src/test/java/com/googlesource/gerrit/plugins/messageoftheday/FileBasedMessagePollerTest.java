@@ -0,0 +1,100 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_EXPIRES_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_ID;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.gerrit.server.git.WorkQueue;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class FileBasedMessagePollerTest {
+  private static final String MESSAGE_ID = "hello";
+  private static final long POLL_INTERVAL_MILLIS = 5000;
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File cfgFile;
+  private Path dataDir;
+  private FileBasedMessageStore store;
+  private MessageActivationTimer activationTimer;
+  private WorkQueue workQueue;
+  private ScheduledExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    cfgFile = tempFolder.newFile("messageoftheday.config");
+    dataDir = tempFolder.newFolder("data").toPath();
+    store = TestMessageStores.fileBased(cfgFile, dataDir, 1024);
+    activationTimer = mock(MessageActivationTimer.class);
+    workQueue = mock(WorkQueue.class);
+    executor = mock(ScheduledExecutorService.class);
+    when(workQueue.getDefaultQueue()).thenReturn(executor);
+  }
+
+  @Test
+  public void doesNotPollIfDisabled() {
+    new FileBasedMessagePoller(store, activationTimer, workQueue, 0).start();
+
+    verifyNoInteractions(workQueue);
+  }
+
+  @Test
+  public void refreshesMessageOnlyWhenFilesWereModified() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, KEY_ID, MESSAGE_ID);
+    config.setString(SECTION_MESSAGE, null, KEY_EXPIRES_AT, "29991231:2359");
+    store.saveConfiguredMessage(new ConfiguredMessage(config, "<p>Hello</p>"));
+    Path htmlFile = dataDir.resolve(MESSAGE_ID + ".html");
+    TestMessageStores.backdate(cfgFile.toPath(), htmlFile);
+    store.getConfiguredMessage();
+    Runnable poll = startPoller();
+
+    poll.run();
+    verify(activationTimer, never()).refreshNow();
+
+    Files.writeString(htmlFile, "<p>Hello again</p>", UTF_8);
+    poll.run();
+    verify(activationTimer).refreshNow();
+  }
+
+  /** Starts the poller and returns the task it scheduled. */
+  private Runnable startPoller() {
+    new FileBasedMessagePoller(store, activationTimer, workQueue, POLL_INTERVAL_MILLIS).start();
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor)
+        .scheduleWithFixedDelay(
+            task.capture(), eq(POLL_INTERVAL_MILLIS), eq(POLL_INTERVAL_MILLIS), eq(MILLISECONDS));
+    return task.getValue();
+  }
+}
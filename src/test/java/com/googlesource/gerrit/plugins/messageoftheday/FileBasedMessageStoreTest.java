@@ -16,13 +16,23 @@ package com.googlesource.gerrit.plugins.messageoftheday;
 
 import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertThrows;
 
+import com.google.common.base.Strings;
+import com.google.gerrit.testing.TestTimeUtil;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.storage.file.FileBasedConfig;
 import org.eclipse.jgit.util.FS;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,6 +43,8 @@ public class FileBasedMessageStoreTest {
   private static final String MESSAGE_ID = "test-message";
   private static final String HTML_CONTENT = "<p>Hello World</p>";
   private static final String EXPIRES_AT = "20260323:1400";
+  private static final long MAX_MESSAGE_SIZE = 1024;
+  private static final long POLL_INTERVAL_MILLIS = 5000;
 
   @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
 
@@ -44,7 +56,12 @@ public class FileBasedMessageStoreTest {
   public void setUp() throws Exception {
     cfgFile = tempFolder.newFile("messageoftheday.config");
     dataDir = tempFolder.newFolder("data").toPath();
-    store = new FileBasedMessageStore(cfgFile, dataDir);
+    store = TestMessageStores.fileBased(cfgFile, dataDir, MAX_MESSAGE_SIZE);
+  }
+
+  @After
+  public void tearDown() {
+    TestTimeUtil.useSystemTime();
   }
 
   @Test
@@ -72,4 +89,157 @@ public class FileBasedMessageStoreTest {
     assertThat(savedConfig.getString(SECTION_MESSAGE, null, "id")).isEqualTo(MESSAGE_ID);
     assertThat(savedConfig.getString(SECTION_MESSAGE, null, "expiresAt")).isEqualTo(EXPIRES_AT);
   }
+
+  @Test
+  public void recordsContentIdAndLeavesNoTemporaryFiles() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", MESSAGE_ID);
+    config.setString(SECTION_MESSAGE, null, "expiresAt", EXPIRES_AT);
+
+    store.saveConfiguredMessage(new ConfiguredMessage(config, HTML_CONTENT));
+
+    FileBasedConfig savedConfig = new FileBasedConfig(cfgFile, FS.DETECTED);
+    savedConfig.load();
+    assertThat(savedConfig.getString(SECTION_MESSAGE, null, "contentId"))
+        .isEqualTo(MessageContent.of(HTML_CONTENT).contentId());
+    assertThat(store.getConfiguredMessage().message()).isEqualTo(HTML_CONTENT);
+    try (Stream<Path> files = Files.list(dataDir)) {
+      assertThat(files.map(p -> p.getFileName().toString()).collect(toList()))
+          .containsExactly(MESSAGE_ID + ".html");
+    }
+  }
+
+  @Test
+  public void returnsCachedMessageWhenFilesAreUnchanged() throws Exception {
+    writeMessage(HTML_CONTENT);
+
+    ConfiguredMessage first = store.getConfiguredMessage();
+    ConfiguredMessage second = store.getConfiguredMessage();
+
+    assertThat(first.message()).isEqualTo(HTML_CONTENT);
+    assertThat(second).isSameInstanceAs(first);
+  }
+
+  @Test
+  public void reloadsMessageWhenHtmlFileChanges() throws Exception {
+    writeMessage(HTML_CONTENT);
+    assertThat(store.getConfiguredMessage().message()).isEqualTo(HTML_CONTENT);
+
+    String updated = "<p>Hello again, World</p>";
+    Files.writeString(dataDir.resolve(MESSAGE_ID + ".html"), updated, UTF_8);
+
+    assertThat(store.getConfiguredMessage().message()).isEqualTo(updated);
+  }
+
+  @Test
+  public void doesNotCheckFilesWithinPollInterval() throws Exception {
+    TestTimeUtil.resetWithClockStep(0, MILLISECONDS);
+    store = pollingStore();
+    writeMessage(HTML_CONTENT);
+    ConfiguredMessage first = store.getConfiguredMessage();
+
+    Files.writeString(dataDir.resolve(MESSAGE_ID + ".html"), "<p>Hello again, World</p>", UTF_8);
+    TestTimeUtil.incrementClock(POLL_INTERVAL_MILLIS - 1, MILLISECONDS);
+
+    assertThat(store.getConfiguredMessage()).isSameInstanceAs(first);
+  }
+
+  @Test
+  public void checksFilesOncePollIntervalPassed() throws Exception {
+    TestTimeUtil.resetWithClockStep(0, MILLISECONDS);
+    store = pollingStore();
+    writeMessage(HTML_CONTENT);
+    assertThat(store.getConfiguredMessage().message()).isEqualTo(HTML_CONTENT);
+
+    String updated = "<p>Hello again, World</p>";
+    Files.writeString(dataDir.resolve(MESSAGE_ID + ".html"), updated, UTF_8);
+    TestTimeUtil.incrementClock(POLL_INTERVAL_MILLIS, MILLISECONDS);
+
+    assertThat(store.getConfiguredMessage().message()).isEqualTo(updated);
+  }
+
+  @Test
+  public void pollChecksFilesWithinPollInterval() throws Exception {
+    TestTimeUtil.resetWithClockStep(0, MILLISECONDS);
+    store = pollingStore();
+    writeMessage(HTML_CONTENT);
+    store.getConfiguredMessage();
+    assertThat(store.poll()).isFalse();
+
+    String updated = "<p>Hello again, World</p>";
+    Files.writeString(dataDir.resolve(MESSAGE_ID + ".html"), updated, UTF_8);
+
+    assertThat(store.poll()).isTrue();
+    assertThat(store.getConfiguredMessage().message()).isEqualTo(updated);
+  }
+
+  @Test
+  public void keepsMessagesIfFilesAreTouchedWithoutChange() throws Exception {
+    writeMessage(HTML_CONTENT);
+    ConfiguredMessage first = store.getConfiguredMessage();
+
+    Path htmlFile = dataDir.resolve(MESSAGE_ID + ".html");
+    Files.writeString(htmlFile, HTML_CONTENT, UTF_8);
+    Files.setLastModifiedTime(cfgFile.toPath(), FileTime.from(Instant.now()));
+
+    assertThat(store.poll()).isFalse();
+    assertThat(store.getConfiguredMessage()).isSameInstanceAs(first);
+  }
+
+  @Test
+  public void savesDespiteStaleLock() throws Exception {
+    writeMessage(HTML_CONTENT);
+    Path lockFile = cfgFile.toPath().resolveSibling("messageoftheday.config.lock");
+    Files.createFile(lockFile);
+    // Left behind by a server which died while saving.
+    Files.setLastModifiedTime(lockFile, FileTime.from(Instant.now().minus(Duration.ofMinutes(10))));
+
+    store.saveConfiguredMessage(new ConfiguredMessage(messageConfig(), "<p>Saved</p>"));
+
+    assertThat(store.getConfiguredMessage().message()).isEqualTo("<p>Saved</p>");
+    assertThat(Files.exists(lockFile)).isFalse();
+  }
+
+  @Test
+  public void doesNotSaveWhileLocked() throws Exception {
+    writeMessage(HTML_CONTENT);
+    Path lockFile = cfgFile.toPath().resolveSibling("messageoftheday.config.lock");
+    Files.createFile(lockFile);
+
+    assertThrows(
+        MessageStoreConflictException.class,
+        () -> store.saveConfiguredMessage(new ConfiguredMessage(messageConfig(), "<p>Saved</p>")));
+
+    assertThat(store.getConfiguredMessage().message()).isEqualTo(HTML_CONTENT);
+    assertThat(Files.exists(lockFile)).isTrue();
+  }
+
+  @Test
+  public void doesNotLoadOversizedMessage() throws Exception {
+    writeMessage(Strings.repeat("x", (int) MAX_MESSAGE_SIZE + 1));
+
+    assertThat(store.getConfiguredMessage().message()).isNull();
+  }
+
+  private FileBasedMessageStore pollingStore() {
+    return TestMessageStores.fileBased(
+        cfgFile, dataDir, MAX_MESSAGE_SIZE, POLL_INTERVAL_MILLIS, TestMessageStores.newMetrics());
+  }
+
+  private static Config messageConfig() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", MESSAGE_ID);
+    config.setString(SECTION_MESSAGE, null, "expiresAt", EXPIRES_AT);
+    return config;
+  }
+
+  private void writeMessage(String html) throws Exception {
+    FileBasedConfig config = new FileBasedConfig(cfgFile, FS.DETECTED);
+    config.setString(SECTION_MESSAGE, null, "id", MESSAGE_ID);
+    config.setString(SECTION_MESSAGE, null, "expiresAt", EXPIRES_AT);
+    config.save();
+    Path htmlFile = dataDir.resolve(MESSAGE_ID + ".html");
+    Files.writeString(htmlFile, html, UTF_8);
+    TestMessageStores.backdate(cfgFile.toPath(), htmlFile);
+  }
 }
@@ -0,0 +1,207 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_EXPIRES_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_PROJECT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_STARTS_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.extensions.restapi.CacheControl;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.testing.TestTimeUtil;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the entity tag and the caching of the message.
+ *
+ * <p>Gerrit answers requests whose {@code If-None-Match} header matches {@link
+ * GetMessage#getETag(ConfigResource)} with {@code 304 Not Modified}, so the entity tag must stay
+ * the same for as long as the shown message doesn't change.
+ */
+public class GetMessageTest {
+  private static final String PLUGIN_NAME = "messageoftheday";
+  private static final ConfigResource RESOURCE = new ConfigResource();
+  private static final String NEVER = "29991231:2359";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private MessageStore store;
+  private GetMessage getMessage;
+
+  @Before
+  public void setUp() throws Exception {
+    TestTimeUtil.resetWithClockStep(0, MILLISECONDS);
+    setClock("2026-03-01T09:00");
+    store =
+        TestMessageStores.fileBased(
+            tempFolder.newFile("messageoftheday.config"),
+            tempFolder.newFolder("data").toPath(),
+            1024);
+    MessageMetrics metrics = TestMessageStores.newMetrics();
+    CompiledMessageCache cache = new CompiledMessageCache(store, metrics);
+    // Not started, so that the current message is looked up with the time of the request.
+    MessageActivationTimer activationTimer =
+        new MessageActivationTimer(cache, mock(WorkQueue.class), metrics, new MessageWatchers());
+    PluginConfigFactory pluginConfigFactory = mock(PluginConfigFactory.class);
+    when(pluginConfigFactory.getFromGerritConfig(anyString()))
+        .thenReturn(PluginConfig.createFromGerritConfig(PLUGIN_NAME, new Config()));
+    getMessage =
+        new GetMessage(cache, activationTimer, metrics, pluginConfigFactory, PLUGIN_NAME);
+  }
+
+  @After
+  public void tearDown() {
+    TestTimeUtil.useSystemTime();
+  }
+
+  @Test
+  public void eTagIdentifiesContentOfShownMessage() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "hello", KEY_EXPIRES_AT, NEVER);
+    save(config, ImmutableMap.of("hello", "<p>Hello</p>"));
+
+    String eTag = getMessage.getETag(RESOURCE);
+
+    assertThat(eTag).startsWith("\"" + MessageContent.of("<p>Hello</p>").contentId() + "-");
+    assertThat(eTag).endsWith("\"");
+    assertThat(getMessage.apply(RESOURCE).statusCode()).isEqualTo(200);
+    // A client sending the entity tag it got gets 304 Not Modified.
+    assertThat(getMessage.getETag(RESOURCE)).isEqualTo(eTag);
+  }
+
+  @Test
+  public void eTagChangesWhenScheduledMessageStarts() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "hello", KEY_EXPIRES_AT, NEVER);
+    config.setString(SECTION_MESSAGE, "maintenance", KEY_STARTS_AT, "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", KEY_EXPIRES_AT, NEVER);
+    save(config, ImmutableMap.of("hello", "<p>Hello</p>", "maintenance", "<p>Down</p>"));
+    setClock("2026-03-01T09:59");
+    String before = getMessage.getETag(RESOURCE);
+
+    setClock("2026-03-01T10:00");
+    String after = getMessage.getETag(RESOURCE);
+
+    assertThat(after).isNotEqualTo(before);
+    assertThat(after).startsWith("\"" + MessageContent.of("<p>Down</p>").contentId() + "-");
+  }
+
+  @Test
+  public void eTagChangesWhenMessageExpires() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "hello", KEY_EXPIRES_AT, "20260301:1000");
+    save(config, ImmutableMap.of("hello", "<p>Hello</p>"));
+    setClock("2026-03-01T09:59");
+    String before = getMessage.getETag(RESOURCE);
+
+    setClock("2026-03-01T10:00");
+
+    assertThat(getMessage.getETag(RESOURCE)).isNotEqualTo(before);
+    assertThat(getMessage.getETag(RESOURCE)).isEqualTo(GetMessage.NO_MESSAGE_ETAG);
+    assertThat(getMessage.apply(RESOURCE).isNone()).isTrue();
+  }
+
+  @Test
+  public void eTagDoesNotChangeWhenMessageOutsideOfSegmentIsModified() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "hello", KEY_EXPIRES_AT, "20260301:1200");
+    config.setString(SECTION_MESSAGE, "maintenance", KEY_STARTS_AT, "20260302:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", KEY_EXPIRES_AT, NEVER);
+    save(config, ImmutableMap.of("hello", "<p>Hello</p>", "maintenance", "<p>Down</p>"));
+    String before = getMessage.getETag(RESOURCE);
+
+    config.setString(SECTION_MESSAGE, "migration", KEY_STARTS_AT, "20260303:1000");
+    config.setString(SECTION_MESSAGE, "migration", KEY_EXPIRES_AT, NEVER);
+    config.setString(SECTION_MESSAGE, "migration", KEY_PROJECT, "android/*");
+    save(
+        config,
+        ImmutableMap.of(
+            "hello",
+            "<p>Hello</p>",
+            "maintenance",
+            "<p>Down soon</p>",
+            "migration",
+            "<p>Moving</p>"));
+
+    assertThat(getMessage.getETag(RESOURCE)).isEqualTo(before);
+  }
+
+  @Test
+  public void maxAgeIsConfiguredMaxAgeIfShownMessageDoesNotChange() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "hello", KEY_EXPIRES_AT, NEVER);
+    save(config, ImmutableMap.of("hello", "<p>Hello</p>"));
+
+    assertThat(maxAgeSeconds(getMessage.apply(RESOURCE))).isEqualTo(60);
+  }
+
+  @Test
+  public void maxAgeIsCappedAtStartOfNextMessage() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "hello", KEY_EXPIRES_AT, NEVER);
+    config.setString(SECTION_MESSAGE, "maintenance", KEY_STARTS_AT, "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", KEY_EXPIRES_AT, NEVER);
+    save(config, ImmutableMap.of("hello", "<p>Hello</p>", "maintenance", "<p>Down</p>"));
+    setClock("2026-03-01T09:59:30");
+
+    assertThat(maxAgeSeconds(getMessage.apply(RESOURCE))).isEqualTo(30);
+  }
+
+  @Test
+  public void maxAgeIsCappedAtExpiryOfMessage() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "hello", KEY_EXPIRES_AT, "20260301:1000");
+    save(config, ImmutableMap.of("hello", "<p>Hello</p>"));
+    setClock("2026-03-01T09:59:15");
+
+    assertThat(maxAgeSeconds(getMessage.apply(RESOURCE))).isEqualTo(45);
+  }
+
+  private void save(Config config, ImmutableMap<String, String> html) throws Exception {
+    ImmutableMap.Builder<String, MessageContent> contents = ImmutableMap.builder();
+    html.forEach((id, content) -> contents.put(id, MessageContent.of(content)));
+    store.saveConfiguredMessage(new ConfiguredMessage(config, contents.build()));
+  }
+
+  private static long maxAgeSeconds(Response<?> response) {
+    assertThat(response.statusCode()).isEqualTo(200);
+    CacheControl caching = response.caching();
+    return caching.getUnit().toSeconds(caching.getMaxAge());
+  }
+
+  private static void setClock(String localDateTime) {
+    Instant time = LocalDateTime.parse(localDateTime).atZone(ZoneId.systemDefault()).toInstant();
+    TestTimeUtil.setClock(time);
+  }
+}
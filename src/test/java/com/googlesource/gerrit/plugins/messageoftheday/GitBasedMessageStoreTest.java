@@ -0,0 +1,216 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_EXPIRES_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_ID;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.CONFIG_FILE;
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.MASTER;
+import static com.googlesource.gerrit.plugins.messageoftheday.TestMessageStores.IDENT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitBasedMessageStoreTest {
+  private static final String EXPIRES_AT = "29991231:2359";
+  private static final long MAX_MESSAGE_SIZE = 1024;
+
+  private InMemoryRepository repo;
+  private GitBasedConfigReader.Loader loader;
+  private GitBasedMessageStore store;
+
+  @Before
+  public void setUp() {
+    repo = new InMemoryRepository(new DfsRepositoryDescription("messageoftheday"));
+    loader =
+        new GitBasedConfigReader.Loader(repo, MAX_MESSAGE_SIZE, TestMessageStores.newMetrics());
+    store = TestMessageStores.gitBased(repo, MAX_MESSAGE_SIZE);
+  }
+
+  @After
+  public void tearDown() {
+    repo.close();
+  }
+
+  @Test
+  public void keepsFilesOutsideOfMessages() throws Exception {
+    Config config = config("hello");
+    commit(
+        ImmutableMap.of(
+            CONFIG_FILE, config.toText(),
+            "hello.html", "<p>Hello</p>",
+            "README.md", "Messages of the day",
+            "archive/old.html", "<p>Old</p>"));
+
+    store.saveConfiguredMessage(new ConfiguredMessage(config, "<p>Hello again</p>"));
+
+    Map<String, String> files = files();
+    assertThat(files).containsEntry("hello.html", "<p>Hello again</p>");
+    assertThat(files).containsEntry("README.md", "Messages of the day");
+    assertThat(files).containsEntry("archive/old.html", "<p>Old</p>");
+  }
+
+  @Test
+  public void savingUnchangedMessagesCreatesNoCommit() throws Exception {
+    store.saveConfiguredMessage(new ConfiguredMessage(config("hello"), "<p>Hello</p>"));
+    ObjectId tip = repo.resolve(MASTER);
+
+    store.saveConfiguredMessage(new ConfiguredMessage(config("hello"), "<p>Hello</p>"));
+
+    assertThat(repo.resolve(MASTER)).isEqualTo(tip);
+  }
+
+  @Test
+  public void deletesHtmlOfRemovedMessages() throws Exception {
+    store.saveConfiguredMessage(
+        new ConfiguredMessage(
+            config("hello", "maintenance"),
+            ImmutableMap.of(
+                "hello", MessageContent.of("<p>Hello</p>"),
+                "maintenance", MessageContent.of("<p>Maintenance</p>"))));
+    assertThat(files()).containsKey("maintenance.html");
+
+    ConfiguredMessage base = store.getConfiguredMessage();
+    store.saveConfiguredMessage(
+        base,
+        new ConfiguredMessage(
+            config("hello"), ImmutableMap.of("hello", MessageContent.of("<p>Hello</p>"))));
+
+    assertThat(files().keySet()).containsExactly(CONFIG_FILE, "hello.html");
+  }
+
+  @Test
+  public void loaderReusesUnchangedMessages() throws Exception {
+    Config config = config("hello", "maintenance");
+    commit(
+        ImmutableMap.of(
+            CONFIG_FILE, config.toText(),
+            "hello.html", "<p>Hello</p>",
+            "maintenance.html", "<p>Maintenance</p>"));
+    CachedConfig loaded = loader.load(CachedConfig.empty());
+
+    ObjectId readmeCommit =
+        commit(
+            ImmutableMap.of(
+                CONFIG_FILE, config.toText(),
+                "hello.html", "<p>Hello</p>",
+                "maintenance.html", "<p>Maintenance</p>",
+                "README.md", "Messages of the day"));
+    CachedConfig afterReadme = loader.load(loaded);
+
+    assertThat(afterReadme.commitId()).isEqualTo(readmeCommit);
+    assertThat(afterReadme.message()).isSameInstanceAs(loaded.message());
+
+    commit(
+        ImmutableMap.of(
+            CONFIG_FILE, config.toText(),
+            "hello.html", "<p>Hello again</p>",
+            "maintenance.html", "<p>Maintenance</p>"));
+    CachedConfig afterUpdate = loader.load(afterReadme);
+
+    assertThat(afterUpdate.message().contents().get("hello").html())
+        .isEqualTo("<p>Hello again</p>");
+    assertThat(afterUpdate.message().contents().get("maintenance"))
+        .isSameInstanceAs(loaded.message().contents().get("maintenance"));
+  }
+
+  /** Returns a config of the messages, the first in the message section. */
+  private static Config config(String id, String... furtherIds) {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, KEY_ID, id);
+    config.setString(SECTION_MESSAGE, null, KEY_EXPIRES_AT, EXPIRES_AT);
+    for (String furtherId : furtherIds) {
+      config.setString(SECTION_MESSAGE, furtherId, KEY_EXPIRES_AT, EXPIRES_AT);
+    }
+    return config;
+  }
+
+  /** Commits the files, by path, on top of the tip, as if pushed by a user. */
+  private ObjectId commit(Map<String, String> files) throws IOException {
+    try (ObjectInserter inserter = repo.newObjectInserter();
+        RevWalk rw = new RevWalk(repo)) {
+      DirCache tree = DirCache.newInCore();
+      DirCacheEditor editor = tree.editor();
+      for (Map.Entry<String, String> e : files.entrySet()) {
+        ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, e.getValue().getBytes(UTF_8));
+        editor.add(
+            new DirCacheEditor.PathEdit(e.getKey()) {
+              @Override
+              public void apply(DirCacheEntry ent) {
+                ent.setFileMode(FileMode.REGULAR_FILE);
+                ent.setObjectId(blobId);
+              }
+            });
+      }
+      editor.finish();
+
+      CommitBuilder cb = new CommitBuilder();
+      cb.setTreeId(tree.writeTree(inserter));
+      ObjectId parent = repo.resolve(MASTER);
+      if (parent != null) {
+        cb.setParentId(parent);
+      }
+      cb.setAuthor(IDENT);
+      cb.setCommitter(IDENT);
+      cb.setMessage("Update by hand");
+      ObjectId commitId = inserter.insert(cb);
+      inserter.flush();
+
+      RefUpdate ru = repo.updateRef(MASTER);
+      ru.setExpectedOldObjectId(parent != null ? parent : ObjectId.zeroId());
+      ru.setNewObjectId(commitId);
+      assertThat(ru.update(rw)).isAnyOf(RefUpdate.Result.NEW, RefUpdate.Result.FAST_FORWARD);
+      return commitId;
+    }
+  }
+
+  /** Returns the content of the files at the tip, by path. */
+  private Map<String, String> files() throws IOException {
+    Map<String, String> files = new HashMap<>();
+    try (RevWalk rw = new RevWalk(repo);
+        TreeWalk tw = new TreeWalk(repo)) {
+      tw.addTree(rw.parseCommit(repo.resolve(MASTER)).getTree());
+      tw.setRecursive(true);
+      while (tw.next()) {
+        files.put(
+            tw.getPathString(),
+            new String(repo.open(tw.getObjectId(0)).getCachedBytes(), UTF_8));
+      }
+    }
+    return files;
+  }
+}
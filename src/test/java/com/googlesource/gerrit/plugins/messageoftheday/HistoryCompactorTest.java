@@ -0,0 +1,231 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.MASTER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.WorkQueue;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistoryCompactorTest {
+  private static final String PLUGIN_NAME = "messageoftheday";
+  private static final Project.NameKey CONFIG_REPO = Project.nameKey("messageoftheday");
+  private static final PersonIdent IDENT =
+      new PersonIdent("Gerrit Code Review", "gerrit@example.com");
+
+  private RacingRepository repo;
+  private GitReferenceUpdated gitRefUpdated;
+
+  @Before
+  public void setUp() {
+    repo = new RacingRepository();
+    gitRefUpdated = mock(GitReferenceUpdated.class);
+  }
+
+  @After
+  public void tearDown() {
+    repo.close();
+  }
+
+  @Test
+  public void keepsConfiguredNumberOfVersions() throws Exception {
+    Instant now = Instant.now();
+    for (int i = 1; i <= 4; i++) {
+      commit("version " + i, now);
+    }
+    ObjectId oldestKept = repo.exactRef(MASTER).getObjectId();
+    commit("version 5", now);
+    ObjectId tip = repo.exactRef(MASTER).getObjectId();
+
+    compactor("keepVersions", "2").compact();
+
+    List<RevCommit> history = history();
+    assertThat(messagesOf(history)).containsExactly("version 5", "version 4").inOrder();
+    assertThat(history.get(0).getTree()).isEqualTo(treeOf(tip));
+    assertThat(history.get(1).getTree()).isEqualTo(treeOf(oldestKept));
+    verify(gitRefUpdated).fire(eq(CONFIG_REPO), any(RefUpdate.class), any());
+  }
+
+  @Test
+  public void keepsCommitsWithinConfiguredHistory() throws Exception {
+    Instant now = Instant.now();
+    commit("version 1", now.minus(Duration.ofDays(10)));
+    commit("version 2", now.minus(Duration.ofDays(5)));
+    commit("version 3", now.minus(Duration.ofHours(2)));
+    commit("version 4", now.minus(Duration.ofHours(1)));
+    ObjectId tip = repo.exactRef(MASTER).getObjectId();
+
+    compactor("keepHistory", "1 day").compact();
+
+    List<RevCommit> history = history();
+    assertThat(messagesOf(history)).containsExactly("version 4", "version 3").inOrder();
+    assertThat(history.get(0).getTree()).isEqualTo(treeOf(tip));
+  }
+
+  @Test
+  public void leavesShortHistoryAlone() throws Exception {
+    Instant now = Instant.now();
+    commit("version 1", now);
+    commit("version 2", now);
+    ObjectId tip = repo.exactRef(MASTER).getObjectId();
+
+    compactor("keepVersions", "2").compact();
+
+    assertThat(repo.exactRef(MASTER).getObjectId()).isEqualTo(tip);
+    verify(gitRefUpdated, never()).fire(any(), any(RefUpdate.class), any());
+  }
+
+  @Test
+  public void skipsCompactionOnConcurrentUpdate() throws Exception {
+    Instant now = Instant.now();
+    for (int i = 1; i <= 3; i++) {
+      commit("version " + i, now);
+    }
+    repo.beforeNextUpdate = () -> commit("concurrent", now);
+
+    compactor("keepVersions", "1").compact();
+
+    assertThat(messagesOf(history()))
+        .containsExactly("concurrent", "version 3", "version 2", "version 1")
+        .inOrder();
+    verify(gitRefUpdated, never()).fire(any(), any(RefUpdate.class), any());
+  }
+
+  private HistoryCompactor compactor(String key, String value) {
+    Config cfg = new Config();
+    cfg.setString("plugin", PLUGIN_NAME, key, value);
+    PluginConfigFactory pluginConfigFactory = mock(PluginConfigFactory.class);
+    when(pluginConfigFactory.getFromGerritConfig(anyString()))
+        .thenReturn(PluginConfig.createFromGerritConfig(PLUGIN_NAME, cfg));
+    return new HistoryCompactor(
+        mock(WorkQueue.class),
+        repo,
+        CONFIG_REPO,
+        gitRefUpdated,
+        IDENT,
+        pluginConfigFactory,
+        PLUGIN_NAME);
+  }
+
+  /** Commits a config with the message, so that every commit has a different tree. */
+  private void commit(String message, Instant when) throws IOException {
+    try (ObjectInserter inserter = repo.newObjectInserter();
+        RevWalk rw = new RevWalk(repo)) {
+      TreeFormatter tree = new TreeFormatter();
+      tree.append(
+          GitBasedMessageStore.CONFIG_FILE,
+          FileMode.REGULAR_FILE,
+          inserter.insert(Constants.OBJ_BLOB, ("# " + message + "\n").getBytes(UTF_8)));
+      PersonIdent ident = new PersonIdent(IDENT, when.toEpochMilli(), 0);
+      CommitBuilder cb = new CommitBuilder();
+      cb.setTreeId(inserter.insert(tree));
+      ObjectId parent = repo.resolve(MASTER);
+      if (parent != null) {
+        cb.setParentId(parent);
+      }
+      cb.setAuthor(ident);
+      cb.setCommitter(ident);
+      cb.setMessage(message);
+      ObjectId commitId = inserter.insert(cb);
+      inserter.flush();
+
+      RefUpdate ru = repo.updateRef(MASTER, false);
+      ru.setExpectedOldObjectId(parent != null ? parent : ObjectId.zeroId());
+      ru.setNewObjectId(commitId);
+      RefUpdate.Result result = ru.update(rw);
+      assertThat(result).isAnyOf(RefUpdate.Result.NEW, RefUpdate.Result.FAST_FORWARD);
+    }
+  }
+
+  /** Returns the commits of the branch, the tip first. */
+  private List<RevCommit> history() throws IOException {
+    List<RevCommit> history = new ArrayList<>();
+    try (RevWalk rw = new RevWalk(repo)) {
+      for (RevCommit c = rw.parseCommit(repo.resolve(MASTER)); ; ) {
+        history.add(c);
+        if (c.getParentCount() == 0) {
+          return history;
+        }
+        c = rw.parseCommit(c.getParent(0));
+      }
+    }
+  }
+
+  private ObjectId treeOf(ObjectId commit) throws IOException {
+    try (RevWalk rw = new RevWalk(repo)) {
+      return rw.parseCommit(commit).getTree().copy();
+    }
+  }
+
+  private static List<String> messagesOf(List<RevCommit> commits) {
+    return commits.stream().map(RevCommit::getShortMessage).toList();
+  }
+
+  /** Repository which can update the branch right before the compactor updates it. */
+  private static class RacingRepository extends InMemoryRepository {
+    interface Update {
+      void run() throws IOException;
+    }
+
+    Update beforeNextUpdate;
+
+    RacingRepository() {
+      super(new DfsRepositoryDescription("messageoftheday"));
+    }
+
+    @Override
+    public RefUpdate updateRef(String ref) throws IOException {
+      Update update = beforeNextUpdate;
+      if (update != null) {
+        beforeNextUpdate = null;
+        update.run();
+      }
+      return super.updateRef(ref);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.git.WorkQueue;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ScheduledExecutorService;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class MessageActivationTimerTest {
+  private static final String SECTION_MESSAGE = "message";
+
+  @Test
+  public void doesNotGoBackToEarlierSegmentOfSameSchedule() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "maintenance", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260301:1200");
+    MessageSchedule schedule =
+        MessageSchedule.compile(
+            new ConfiguredMessage(
+                config, ImmutableMap.of("maintenance", MessageContent.of("<p>Down</p>"))));
+    MessageActivationTimer timer =
+        new MessageActivationTimer(
+            mock(CompiledMessageCache.class),
+            mock(WorkQueue.class),
+            new MessageMetrics(new DisabledMetricMaker()),
+            new MessageWatchers());
+
+    MessageSchedule.Segment activated = timer.current(schedule, millis("2026-03-01T10:00"));
+    // A request which took the time right before the message was activated.
+    MessageSchedule.Segment stale = timer.current(schedule, millis("2026-03-01T09:59"));
+
+    assertThat(activated.message().id()).isEqualTo("maintenance");
+    assertThat(stale).isSameInstanceAs(activated);
+  }
+
+  @Test
+  public void notifiesWatchersOnTimerThreadOnlyIfNewSegmentIsPublished() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "maintenance", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260301:1200");
+    MessageSchedule schedule =
+        MessageSchedule.compile(
+            new ConfiguredMessage(
+                config, ImmutableMap.of("maintenance", MessageContent.of("<p>Down</p>"))));
+    WorkQueue workQueue = mock(WorkQueue.class);
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    when(workQueue.createQueue(anyInt(), anyString())).thenReturn(executor);
+    MessageWatchers watchers = mock(MessageWatchers.class);
+    MessageActivationTimer timer =
+        new MessageActivationTimer(
+            mock(CompiledMessageCache.class),
+            workQueue,
+            new MessageMetrics(new DisabledMetricMaker()),
+            watchers);
+    timer.start();
+    ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).execute(tasks.capture());
+
+    timer.current(schedule, millis("2026-03-01T10:00"));
+    timer.current(schedule, millis("2026-03-01T10:30"));
+
+    verify(watchers, never()).publish(any());
+    verify(executor, times(2)).execute(tasks.capture());
+    tasks.getValue().run();
+    verify(watchers).publish(timer.current(schedule, millis("2026-03-01T10:30")));
+  }
+
+  private static long millis(String localDateTime) {
+    return LocalDateTime.parse(localDateTime)
+        .atZone(ZoneId.systemDefault())
+        .toInstant()
+        .toEpochMilli();
+  }
+}
@@ -0,0 +1,187 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class MessageScheduleTest {
+  private static final String SECTION_MESSAGE = "message";
+
+  @Test
+  public void showsMostRecentlyStartedActiveMessage() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "default");
+    config.setString(SECTION_MESSAGE, null, "startsAt", "20260301:0800");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1800");
+    config.setString(SECTION_MESSAGE, "maintenance", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260301:1200");
+
+    MessageSchedule schedule = compile(config);
+
+    assertThat(idAt(schedule, "2026-03-01T07:59")).isNull();
+    assertThat(idAt(schedule, "2026-03-01T09:00")).isEqualTo("default");
+    assertThat(idAt(schedule, "2026-03-01T10:00")).isEqualTo("maintenance");
+    assertThat(idAt(schedule, "2026-03-01T12:00")).isEqualTo("maintenance");
+    assertThat(idAt(schedule, "2026-03-01T12:01")).isEqualTo("default");
+    assertThat(idAt(schedule, "2026-03-01T18:01")).isNull();
+  }
+
+  @Test
+  public void messageWithoutStartDoesNotPreemptStartedMessages() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "default");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1800");
+    config.setString(SECTION_MESSAGE, "maintenance", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260301:1200");
+
+    MessageSchedule schedule = compile(config);
+
+    assertThat(idAt(schedule, "1970-01-01T00:00")).isEqualTo("default");
+    assertThat(idAt(schedule, "2026-03-01T11:00")).isEqualTo("maintenance");
+    assertThat(idAt(schedule, "2026-03-01T12:01")).isEqualTo("default");
+    assertThat(schedule.at(millis("2026-03-01T09:00")).from()).isEqualTo(Long.MIN_VALUE);
+  }
+
+  @Test
+  public void segmentEndsAtNextBoundary() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "maintenance", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260301:1200");
+
+    MessageSchedule.Segment segment = compile(config).at(millis("2026-03-01T09:00"));
+
+    assertThat(segment.message()).isNull();
+    assertThat(segment.until()).isEqualTo(millis("2026-03-01T10:00"));
+  }
+
+  @Test
+  public void skipsMessagesWithoutContent() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "maintenance", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "maintenance", "expiresAt", "20260301:1200");
+
+    MessageSchedule schedule =
+        MessageSchedule.compile(new ConfiguredMessage(config, ImmutableMap.of()));
+
+    assertThat(schedule.messages()).isEmpty();
+  }
+
+  @Test
+  public void showsProjectScopedMessagesForMatchingProjects() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "default");
+    config.setString(SECTION_MESSAGE, null, "startsAt", "20260301:0800");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1800");
+    config.setString(SECTION_MESSAGE, "migration", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "migration", "expiresAt", "20260301:1200");
+    config.setStringList(
+        SECTION_MESSAGE, "migration", "project", ImmutableList.of("android/*", "tools"));
+
+    MessageSchedule.Segment segment = compile(config).at(millis("2026-03-01T11:00"));
+
+    assertThat(segment.message().id()).isEqualTo("default");
+    assertThat(segment.message("android/platform").id()).isEqualTo("migration");
+    assertThat(segment.message("tools").id()).isEqualTo("migration");
+    assertThat(segment.message("tools/gerrit").id()).isEqualTo("default");
+    assertThat(segment.message("android").id()).isEqualTo("default");
+  }
+
+  @Test
+  public void showsProjectScopedMessagesOnlyWhileActive() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "migration", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "migration", "expiresAt", "20260301:1200");
+    config.setString(SECTION_MESSAGE, "migration", "project", "android/*");
+    config.setString(SECTION_MESSAGE, "freeze", "startsAt", "20260301:1100");
+    config.setString(SECTION_MESSAGE, "freeze", "expiresAt", "20260301:1300");
+    config.setString(SECTION_MESSAGE, "freeze", "project", "android/platform");
+
+    MessageSchedule schedule = compile(config);
+
+    assertThat(projectIdAt(schedule, "android/platform", "2026-03-01T09:00")).isNull();
+    assertThat(projectIdAt(schedule, "android/platform", "2026-03-01T10:30"))
+        .isEqualTo("migration");
+    assertThat(projectIdAt(schedule, "android/platform", "2026-03-01T11:30")).isEqualTo("freeze");
+    assertThat(projectIdAt(schedule, "android/build", "2026-03-01T11:30")).isEqualTo("migration");
+    assertThat(projectIdAt(schedule, "android/platform", "2026-03-01T12:30")).isEqualTo("freeze");
+    assertThat(projectIdAt(schedule, "android/build", "2026-03-01T12:30")).isNull();
+  }
+
+  @Test
+  public void reportsOutcomeByMessagesForProject() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "default");
+    config.setString(SECTION_MESSAGE, null, "startsAt", "20260301:0800");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:0900");
+    config.setString(SECTION_MESSAGE, "migration", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "migration", "expiresAt", "20260301:1200");
+    config.setString(SECTION_MESSAGE, "migration", "project", "android/*");
+
+    MessageSchedule schedule = compile(config);
+    MessageSchedule.Segment segment = schedule.at(millis("2026-03-01T09:30"));
+
+    assertThat(MessageMetrics.Outcome.of(schedule, segment, null, null))
+        .isEqualTo(MessageMetrics.Outcome.EXPIRED);
+    assertThat(MessageMetrics.Outcome.of(schedule, segment, "android/platform", null))
+        .isEqualTo(MessageMetrics.Outcome.NOT_YET_STARTED);
+  }
+
+  @Test
+  public void skipsMessagesForOtherHosts() {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, "replica", "expiresAt", "20991231:1200");
+    config.setString(SECTION_MESSAGE, "replica", "host", "replica-1.example.com");
+
+    assertThat(compile(config, "replica-1.example.com").messages()).hasSize(1);
+    assertThat(compile(config, "primary.example.com").messages()).isEmpty();
+  }
+
+  private static MessageSchedule compile(Config config) {
+    return compile(config, "primary.example.com");
+  }
+
+  private static MessageSchedule compile(Config config, String host) {
+    ImmutableMap.Builder<String, MessageContent> contents = ImmutableMap.builder();
+    for (String id : ConfiguredMessage.messageIds(config)) {
+      contents.put(id, MessageContent.of("<p>" + id + "</p>"));
+    }
+    return MessageSchedule.compile(new ConfiguredMessage(config, contents.build()), host);
+  }
+
+  private static String idAt(MessageSchedule schedule, String localDateTime) {
+    CompiledMessage message = schedule.at(millis(localDateTime)).message();
+    return message != null ? message.id() : null;
+  }
+
+  private static String projectIdAt(
+      MessageSchedule schedule, String project, String localDateTime) {
+    CompiledMessage message = schedule.at(millis(localDateTime)).message(project);
+    return message != null ? message.id() : null;
+  }
+
+  private static long millis(String localDateTime) {
+    return LocalDateTime.parse(localDateTime)
+        .atZone(ZoneId.systemDefault())
+        .toInstant()
+        .toEpochMilli();
+  }
+}
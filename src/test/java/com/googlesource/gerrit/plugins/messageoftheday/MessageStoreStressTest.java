@@ -0,0 +1,206 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_EXPIRES_AT;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.KEY_ID;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Strings;
+import com.google.common.flogger.FluentLogger;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Saves and reads messages from several threads at once.
+ *
+ * <p>Every save increments the revision of the message, which is recorded in both the config and
+ * the HTML file. Writers base each save on the message they read, so that concurrent saves
+ * conflict and are retried. Readers check that the config and the HTML file of every message they
+ * read match, and that revisions never go back. In the end, no save may be lost.
+ *
+ * <p>The throughput of reads and saves is logged. The latency of reads while saving is measured by
+ * {@code ReadWhileSavingBenchmark}, and the throughput of serving messages without saves by {@code
+ * GetMessageBenchmark}.
+ */
+public class MessageStoreStressTest {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final String MESSAGE_ID = "stress";
+  private static final String KEY_REVISION = "revision";
+  private static final String EXPIRES_AT = "29991231:2359";
+  private static final Pattern CONTENT_REVISION = Pattern.compile("^<p>Revision (\\d+) ");
+  private static final int CONTENT_SIZE = 16 * 1024;
+  private static final long MAX_MESSAGE_SIZE = 2 * CONTENT_SIZE;
+  private static final int WRITERS = 4;
+  private static final int READERS = 4;
+  private static final int SAVES_PER_WRITER = 25;
+  private static final long TIMEOUT_SECONDS = 120;
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void fileBasedStoreUnderConcurrentReadsAndSaves() throws Exception {
+    File cfgFile = tempFolder.newFile("messageoftheday.config");
+    Path dataDir = tempFolder.newFolder("data").toPath();
+    stress("file", TestMessageStores.fileBased(cfgFile, dataDir, MAX_MESSAGE_SIZE));
+  }
+
+  @Test
+  public void gitBasedStoreUnderConcurrentReadsAndSaves() throws Exception {
+    try (Repository repo = new InMemoryRepository(new DfsRepositoryDescription("stress"))) {
+      stress("git", TestMessageStores.gitBased(repo, MAX_MESSAGE_SIZE));
+    }
+  }
+
+  private static void stress(String name, MessageStore store) throws Exception {
+    store.saveConfiguredMessage(message(0, -1));
+
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      AtomicBoolean saving = new AtomicBoolean(true);
+      AtomicInteger conflicts = new AtomicInteger();
+      List<Future<?>> writers = new ArrayList<>();
+      for (int i = 0; i < WRITERS; i++) {
+        int writer = i;
+        writers.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  save(store, writer, conflicts);
+                  return null;
+                }));
+      }
+      List<Future<Integer>> readers = new ArrayList<>();
+      for (int i = 0; i < READERS; i++) {
+        readers.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return read(store, saving);
+                }));
+      }
+
+      long startNanos = System.nanoTime();
+      start.countDown();
+      try {
+        for (Future<?> writer : writers) {
+          writer.get(TIMEOUT_SECONDS, SECONDS);
+        }
+      } finally {
+        saving.set(false);
+      }
+      long elapsedNanos = System.nanoTime() - startNanos;
+      int reads = 0;
+      for (Future<Integer> reader : readers) {
+        int readerReads = reader.get(TIMEOUT_SECONDS, SECONDS);
+        assertThat(readerReads).isGreaterThan(0);
+        reads += readerReads;
+      }
+
+      // Every conflict is retried, so that all saves succeed in the end.
+      int saves = WRITERS * SAVES_PER_WRITER;
+      assertThat(revisionOf(store.getConfiguredMessage())).isEqualTo(saves);
+
+      double seconds = elapsedNanos / 1e9;
+      logger.atInfo().log(
+          "%s store: %d saves (%.0f/s, %d conflicts), %d reads (%.0f/s)",
+          name,
+          saves,
+          saves / seconds,
+          conflicts.get(),
+          reads,
+          reads / seconds);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void save(MessageStore store, int writer, AtomicInteger conflicts)
+      throws MessageStoreException {
+    for (int saved = 0; saved < SAVES_PER_WRITER; ) {
+      ConfiguredMessage base = store.getConfiguredMessage();
+      try {
+        store.saveConfiguredMessage(base, message(revisionOf(base) + 1, writer));
+        saved++;
+      } catch (MessageStoreConflictException e) {
+        // Retried based on the message saved concurrently.
+        conflicts.incrementAndGet();
+      }
+    }
+  }
+
+  /** Reads the message until the saves are done, returns the number of reads. */
+  private static int read(MessageStore store, AtomicBoolean saving) throws Exception {
+    int reads = 0;
+    int lastRevision = 0;
+    do {
+      ConfiguredMessage message = store.getConfiguredMessage();
+      reads++;
+
+      int revision = revisionOf(message);
+      assertWithMessage("content of revision %s", revision)
+          .that(contentRevisionOf(message))
+          .isEqualTo(revision);
+      assertWithMessage("revision read after revision %s", lastRevision)
+          .that(revision)
+          .isAtLeast(lastRevision);
+      lastRevision = revision;
+    } while (saving.get());
+    return reads;
+  }
+
+  /** Returns the message with the given revision, with content unique to the writer. */
+  private static ConfiguredMessage message(int revision, int writer) {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, KEY_ID, MESSAGE_ID);
+    config.setString(SECTION_MESSAGE, null, KEY_EXPIRES_AT, EXPIRES_AT);
+    config.setInt(SECTION_MESSAGE, null, KEY_REVISION, revision);
+    String content = "<p>Revision " + revision + " by writer " + writer + "</p>";
+    return new ConfiguredMessage(config, Strings.padEnd(content, CONTENT_SIZE, ' '));
+  }
+
+  private static int revisionOf(ConfiguredMessage message) {
+    return message.config().getInt(SECTION_MESSAGE, null, KEY_REVISION, -1);
+  }
+
+  private static int contentRevisionOf(ConfiguredMessage message) {
+    MessageContent content = message.contents().get(MESSAGE_ID);
+    assertWithMessage("content of message").that(content).isNotNull();
+    Matcher m = CONTENT_REVISION.matcher(content.html());
+    assertWithMessage("content of message").that(m.find()).isTrue();
+    return Integer.parseInt(m.group(1));
+  }
+}
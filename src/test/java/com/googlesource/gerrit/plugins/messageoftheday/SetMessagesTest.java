@@ -0,0 +1,338 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.CONFIG_FILE;
+import static com.googlesource.gerrit.plugins.messageoftheday.GitBasedMessageStore.MASTER;
+import static com.googlesource.gerrit.plugins.messageoftheday.TestMessageStores.IDENT;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.inject.util.Providers;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SetMessagesTest {
+  private static final String EXPIRES_AT = "12/31/2999, 11:59 PM UTC";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File cfgFile;
+  private Path dataDir;
+  private FileBasedMessageStore store;
+  private PermissionBackend permissionBackend;
+  private SetMessages setMessages;
+  private SetMessage setMessage;
+
+  @Before
+  public void setUp() throws Exception {
+    // The data directory is nested, so that files escaping it can be found.
+    File siteDir = tempFolder.newFolder("site");
+    cfgFile = new File(siteDir, "messageoftheday.config");
+    dataDir = Files.createDirectory(siteDir.toPath().resolve("data"));
+    store = TestMessageStores.fileBased(cfgFile, dataDir, 1024);
+    permissionBackend = mock(PermissionBackend.class, RETURNS_DEEP_STUBS);
+    setMessages = setMessages(store);
+    setMessage =
+        new SetMessage(
+            store,
+            Providers.of(IDENT),
+            permissionBackend,
+            new UpdateBannerPermission("messageoftheday"),
+            1024,
+            mock(MessageActivationTimer.class));
+  }
+
+  @Test
+  public void fileBasedStoreSavesBatchAtOnce() throws Exception {
+    store.saveConfiguredMessage(messages("a", "b", "c"));
+    CountingMessageStore counting = new CountingMessageStore(store);
+
+    setMessages(counting).apply(new ConfigResource(), batch());
+
+    assertThat(counting.saves).isEqualTo(1);
+    assertThat(store.getConfiguredMessage().settings().keySet()).containsExactly("a", "d");
+    assertThat(store.getConfiguredMessage().contents().get("a").html()).isEqualTo("<p>a again</p>");
+    assertThat(filesIn(dataDir)).containsExactly("a.html", "d.html");
+  }
+
+  @Test
+  public void gitBasedStoreCommitsBatchAtOnce() throws Exception {
+    try (InMemoryRepository repo =
+        new InMemoryRepository(new DfsRepositoryDescription("messageoftheday"))) {
+      GitBasedMessageStore gitStore = TestMessageStores.gitBased(repo, 1024);
+      gitStore.saveConfiguredMessage(messages("a", "b", "c"));
+      ObjectId tip = repo.resolve(MASTER);
+
+      setMessages(gitStore).apply(new ConfigResource(), batch());
+
+      try (RevWalk rw = new RevWalk(repo)) {
+        RevCommit commit = rw.parseCommit(repo.resolve(MASTER));
+        assertThat(commit.getParentCount()).isEqualTo(1);
+        assertThat(commit.getParent(0).toObjectId()).isEqualTo(tip);
+        assertThat(pathsIn(repo, commit)).containsExactly(CONFIG_FILE, "a.html", "d.html");
+      }
+      assertThat(gitStore.getConfiguredMessage().settings().keySet()).containsExactly("a", "d");
+      assertThat(gitStore.getConfiguredMessage().contents().get("a").html())
+          .isEqualTo("<p>a again</p>");
+    }
+  }
+
+  @Test
+  public void rejectsMessageIdsWhichAreNoFileNames() throws Exception {
+    for (String id : ImmutableList.of("../../escaped", "nested/id", "..", "a..b", "white space")) {
+      MessagesInput input = new MessagesInput();
+      input.messages = ImmutableMap.of(id, update("<p>Hello</p>"));
+
+      assertThrows(
+          BadRequestException.class, () -> setMessages.apply(new ConfigResource(), input));
+    }
+
+    assertThat(cfgFile.exists()).isFalse();
+    assertThat(filesIn(tempFolder.getRoot().toPath())).containsExactly("site/data");
+  }
+
+  @Test
+  public void rejectsDeletionOfInvalidMessageId() throws Exception {
+    MessagesInput input = new MessagesInput();
+    input.delete = ImmutableList.of("../escaped");
+
+    assertThrows(BadRequestException.class, () -> setMessages.apply(new ConfigResource(), input));
+  }
+
+  @Test
+  public void updatesMessageWithConfiguredIdWhichIsNoFileName() throws Exception {
+    Config config = new Config();
+    config.setString("message", null, "id", "white space");
+    store.saveConfiguredMessage(new ConfiguredMessage(config, ImmutableMap.of()));
+    MessageInput input = new MessageInput();
+    input.message = "<p>Hello</p>";
+    input.expiresAt = EXPIRES_AT;
+
+    setMessage.apply(new ConfigResource(), input);
+
+    assertThat(store.getConfiguredMessage().message()).isEqualTo("<p>Hello</p>");
+  }
+
+  @Test
+  public void deletesMessageWithConfiguredIdWhichIsNoFileName() throws Exception {
+    Config config = new Config();
+    config.setString("message", "white space", "expiresAt", "29991231:2359");
+    store.saveConfiguredMessage(
+        new ConfiguredMessage(
+            config, ImmutableMap.of("white space", MessageContent.of("<p>Hello</p>"))));
+    MessagesInput input = new MessagesInput();
+    input.delete = ImmutableList.of("white space");
+
+    setMessages.apply(new ConfigResource(), input);
+
+    assertThat(store.getConfiguredMessage().settings()).isEmpty();
+  }
+
+  @Test
+  public void clearsStartAndSetsScopeOfMessage() throws Exception {
+    Config config = new Config();
+    config.setString("message", "a", "startsAt", "20260301:1000");
+    config.setString("message", "a", "expiresAt", "29991231:2359");
+    config.setString("message", "a", "host", "primary.example.com");
+    store.saveConfiguredMessage(
+        new ConfiguredMessage(config, ImmutableMap.of("a", MessageContent.of("<p>a</p>"))));
+    MessagesInput.MessageUpdate update = new MessagesInput.MessageUpdate();
+    update.startsAt = "";
+    update.projects = ImmutableList.of("android/*", "tools/repo");
+    update.hosts = ImmutableList.of();
+    MessagesInput input = new MessagesInput();
+    input.messages = ImmutableMap.of("a", update);
+
+    setMessages.apply(new ConfigResource(), input);
+
+    ConfiguredMessage.Settings settings = store.getConfiguredMessage().settings().get("a");
+    assertThat(settings.startsAt()).isNull();
+    assertThat(settings.expiresAt()).isEqualTo("29991231:2359");
+    assertThat(settings.projects()).containsExactly("android/*", "tools/repo").inOrder();
+    assertThat(settings.hosts()).isEmpty();
+  }
+
+  @Test
+  public void rejectsUpdateOfMessageWithoutContent() throws Exception {
+    Config config = new Config();
+    config.setString("message", "a", "expiresAt", "29991231:2359");
+    store.saveConfiguredMessage(new ConfiguredMessage(config, ImmutableMap.of()));
+    MessagesInput.MessageUpdate update = new MessagesInput.MessageUpdate();
+    update.expiresAt = EXPIRES_AT;
+    MessagesInput input = new MessagesInput();
+    input.messages = ImmutableMap.of("a", update);
+
+    UnprocessableEntityException e =
+        assertThrows(
+            UnprocessableEntityException.class,
+            () -> setMessages.apply(new ConfigResource(), input));
+    assertThat(e)
+        .hasMessageThat()
+        .isEqualTo("message is required for message a, it has no content");
+  }
+
+  @Test
+  public void rejectsUpdateBasedOnStaleVersion() throws Exception {
+    store.saveConfiguredMessage(messages("a"));
+    String version = store.getConfiguredMessage().version();
+    store.saveConfiguredMessage(messages("a", "b"));
+    MessagesInput input = new MessagesInput();
+    input.messages = ImmutableMap.of("a", update("<p>a again</p>"));
+    input.expectedVersion = version;
+
+    assertThrows(
+        ResourceConflictException.class, () -> setMessages.apply(new ConfigResource(), input));
+    assertThat(store.getConfiguredMessage().contents().get("a").html()).isEqualTo("<p>a</p>");
+  }
+
+  @Test
+  public void checksExpectedVersionAgainstFilesRatherThanCache() throws Exception {
+    FileBasedMessageStore polling =
+        TestMessageStores.fileBased(
+            cfgFile, dataDir, 1024, HOURS.toMillis(1), TestMessageStores.newMetrics());
+    polling.saveConfiguredMessage(messages("a"));
+    String cachedVersion = polling.getConfiguredMessage().version();
+    // Saved by another server, which isn't seen within the poll interval.
+    store.saveConfiguredMessage(messages("a", "b"));
+    String storedVersion = store.getConfiguredMessage().version();
+    assertThat(polling.getConfiguredMessage().version()).isEqualTo(cachedVersion);
+
+    MessagesInput stale = new MessagesInput();
+    stale.messages = ImmutableMap.of("a", update("<p>a again</p>"));
+    stale.expectedVersion = cachedVersion;
+    assertThrows(
+        ResourceConflictException.class,
+        () -> setMessages(polling).apply(new ConfigResource(), stale));
+
+    MessagesInput current = new MessagesInput();
+    current.messages = ImmutableMap.of("a", update("<p>a again</p>"));
+    current.expectedVersion = storedVersion;
+    setMessages(polling).apply(new ConfigResource(), current);
+    assertThat(store.getConfiguredMessage().contents().get("a").html())
+        .isEqualTo("<p>a again</p>");
+    assertThat(store.getConfiguredMessage().settings().keySet()).containsExactly("a", "b");
+  }
+
+  private SetMessages setMessages(MessageStore messageStore) {
+    return new SetMessages(
+        messageStore,
+        Providers.of(IDENT),
+        permissionBackend,
+        new UpdateBannerPermission("messageoftheday"),
+        1024,
+        mock(MessageActivationTimer.class));
+  }
+
+  /** Returns the messages with the given IDs, each with its ID as content. */
+  private static ConfiguredMessage messages(String... ids) {
+    Config config = new Config();
+    ImmutableMap.Builder<String, MessageContent> contents = ImmutableMap.builder();
+    for (String id : ids) {
+      config.setString("message", id, "expiresAt", "29991231:2359");
+      contents.put(id, MessageContent.of("<p>" + id + "</p>"));
+    }
+    return new ConfiguredMessage(config, contents.build());
+  }
+
+  /** Returns a batch updating message a, creating d and deleting b and c. */
+  private static MessagesInput batch() {
+    MessagesInput input = new MessagesInput();
+    input.messages = ImmutableMap.of("a", update("<p>a again</p>"), "d", update("<p>d</p>"));
+    input.delete = ImmutableList.of("b", "c");
+    return input;
+  }
+
+  private static MessagesInput.MessageUpdate update(String message) {
+    MessagesInput.MessageUpdate update = new MessagesInput.MessageUpdate();
+    update.message = message;
+    update.expiresAt = EXPIRES_AT;
+    return update;
+  }
+
+  /** Returns the paths of all files in the tree of the commit. */
+  private static Iterable<String> pathsIn(Repository repo, RevCommit commit) throws Exception {
+    List<String> paths = new ArrayList<>();
+    try (TreeWalk tw = new TreeWalk(repo)) {
+      tw.addTree(commit.getTree());
+      tw.setRecursive(true);
+      while (tw.next()) {
+        paths.add(tw.getPathString());
+      }
+    }
+    return paths;
+  }
+
+  /** Returns the paths of all files and directories below the directory. */
+  private static Iterable<String> filesIn(Path dir) throws Exception {
+    try (Stream<Path> files = Files.walk(dir)) {
+      return files
+          .filter(p -> !p.equals(dir) && !p.equals(dir.resolve("site")))
+          .map(p -> dir.relativize(p).toString())
+          .collect(toList());
+    }
+  }
+
+  /** Counts the saves, the file based store writes each to the files at once. */
+  private static class CountingMessageStore implements MessageStore {
+    private final MessageStore delegate;
+    private int saves;
+
+    CountingMessageStore(MessageStore delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public ConfiguredMessage getConfiguredMessage() throws MessageStoreException {
+      return delegate.getConfiguredMessage();
+    }
+
+    @Override
+    public void saveConfiguredMessage(
+        ConfiguredMessage base, ConfiguredMessage message, @Nullable String expectedVersion)
+        throws MessageStoreException {
+      saves++;
+      delegate.saveConfiguredMessage(base, message, expectedVersion);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.util.Providers;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+
+/** Creates the message stores for tests and benchmarks, without starting a Gerrit server. */
+final class TestMessageStores {
+  static final Project.NameKey CONFIG_REPO = Project.nameKey("messageoftheday");
+  static final PersonIdent IDENT = new PersonIdent("Gerrit Code Review", "gerrit@example.com");
+
+  /** Returns a file based store which checks the files for modifications on every read. */
+  static FileBasedMessageStore fileBased(File cfgFile, Path dataDir, long maxMessageSize) {
+    return fileBased(cfgFile, dataDir, maxMessageSize, 0, newMetrics());
+  }
+
+  static FileBasedMessageStore fileBased(
+      File cfgFile,
+      Path dataDir,
+      long maxMessageSize,
+      long pollIntervalMillis,
+      MessageMetrics metrics) {
+    return new FileBasedMessageStore(cfgFile, dataDir, maxMessageSize, pollIntervalMillis, metrics);
+  }
+
+  static GitBasedMessageStore gitBased(Repository repo, long maxMessageSize) {
+    return gitBased(repo, maxMessageSize, newMetrics());
+  }
+
+  /**
+   * Returns a Git based store committing as {@link #IDENT}.
+   *
+   * <p>The config reader isn't started, so that the config is only reloaded when it is saved
+   * through the store.
+   */
+  static GitBasedMessageStore gitBased(
+      Repository repo, long maxMessageSize, MessageMetrics metrics) {
+    GitBasedConfigReader.Loader loader =
+        new GitBasedConfigReader.Loader(repo, maxMessageSize, metrics);
+    GitBasedConfigReader configReader =
+        new GitBasedConfigReader(
+            CacheBuilder.newBuilder().build(loader),
+            CONFIG_REPO,
+            loader,
+            mock(WorkQueue.class),
+            Providers.of(null),
+            0);
+    IdentifiedUser user = mock(IdentifiedUser.class);
+    when(user.asIdentifiedUser()).thenReturn(user);
+    when(user.newCommitterIdent(any(Instant.class), any(ZoneId.class))).thenReturn(IDENT);
+    return new GitBasedMessageStore(
+        configReader,
+        GitReferenceUpdated.DISABLED,
+        CONFIG_REPO,
+        repo,
+        IDENT,
+        Providers.of(user),
+        metrics);
+  }
+
+  /**
+   * Moves the modification time of the files a minute back.
+   *
+   * <p>Files modified right before they are read are considered racily clean and are always
+   * reloaded, this moves their timestamps out of that window.
+   */
+  static void backdate(Path... files) throws IOException {
+    FileTime past = FileTime.from(Instant.now().minus(Duration.ofMinutes(1)));
+    for (Path file : files) {
+      Files.setLastModifiedTime(file, past);
+    }
+  }
+
+  static MessageMetrics newMetrics() {
+    return new MessageMetrics(new DisabledMetricMaker());
+  }
+
+  private TestMessageStores() {}
+}
@@ -0,0 +1,172 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.messageoftheday;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.googlesource.gerrit.plugins.messageoftheday.ConfiguredMessage.SECTION_MESSAGE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.ProjectPermission;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WatchMessageServletTest {
+  private static final String PLUGIN_NAME = "messageoftheday";
+  private static final String PROJECT = "android/platform";
+
+  private MessageActivationTimer activationTimer;
+  private MessageWatchers watchers;
+  private ProjectCache projectCache;
+  private PermissionBackend permissionBackend;
+  private WatchMessageServlet servlet;
+
+  @Before
+  public void setUp() {
+    activationTimer = mock(MessageActivationTimer.class);
+    watchers = new MessageWatchers();
+    projectCache = mock(ProjectCache.class);
+    permissionBackend = mock(PermissionBackend.class, RETURNS_DEEP_STUBS);
+    Config cfg = new Config();
+    cfg.setString("plugin", PLUGIN_NAME, "watchTimeout", "30s");
+    PluginConfigFactory pluginConfigFactory = mock(PluginConfigFactory.class);
+    when(pluginConfigFactory.getFromGerritConfig(anyString()))
+        .thenReturn(PluginConfig.createFromGerritConfig(PLUGIN_NAME, cfg));
+    servlet =
+        new WatchMessageServlet(
+            activationTimer,
+            watchers,
+            projectCache,
+            permissionBackend,
+            pluginConfigFactory,
+            PLUGIN_NAME);
+  }
+
+  @Test
+  public void answersRightAwayIfRequestCannotBeSuspended() throws Exception {
+    when(activationTimer.current())
+        .thenReturn(
+            new MessageSchedule.Segment(Long.MIN_VALUE, Long.MAX_VALUE, ImmutableList.of()));
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    when(req.getHeader("If-None-Match")).thenReturn(GetMessage.NO_MESSAGE_ETAG);
+    when(req.isAsyncSupported()).thenReturn(false);
+    HttpServletResponse res = mock(HttpServletResponse.class);
+
+    servlet.doGet(req, res);
+
+    verify(req, never()).startAsync();
+    verify(res).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(res).setHeader("ETag", GetMessage.NO_MESSAGE_ETAG);
+    verify(res).setHeader("Retry-After", "30");
+  }
+
+  @Test
+  public void doesNotWatchMessageOfHiddenProject() throws Exception {
+    when(projectCache.get(Project.nameKey(PROJECT))).thenReturn(Optional.empty());
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    when(req.getParameter("project")).thenReturn(PROJECT);
+    HttpServletResponse res = mock(HttpServletResponse.class);
+
+    servlet.doGet(req, res);
+
+    verify(res).sendError(HttpServletResponse.SC_NOT_FOUND);
+    verify(req, never()).startAsync();
+  }
+
+  @Test
+  public void answersWatchersOfProjectOnlyIfMessageOfProjectChanges() throws Exception {
+    Config config = new Config();
+    config.setString(SECTION_MESSAGE, null, "id", "default");
+    config.setString(SECTION_MESSAGE, null, "expiresAt", "20260301:1800");
+    config.setString(SECTION_MESSAGE, "migration", "startsAt", "20260301:1000");
+    config.setString(SECTION_MESSAGE, "migration", "expiresAt", "20260301:1200");
+    config.setString(SECTION_MESSAGE, "migration", "project", "android/*");
+    MessageSchedule schedule =
+        MessageSchedule.compile(
+            new ConfiguredMessage(
+                config,
+                ImmutableMap.of(
+                    "default", MessageContent.of("<p>Hello</p>"),
+                    "migration", MessageContent.of("<p>Moving</p>"))));
+    MessageSchedule.Segment before = schedule.at(millis("2026-03-01T09:00"));
+    when(activationTimer.current()).thenReturn(before);
+    ProjectState projectState = mock(ProjectState.class);
+    when(projectState.statePermitsRead()).thenReturn(true);
+    when(projectCache.get(Project.nameKey(PROJECT))).thenReturn(Optional.of(projectState));
+    when(permissionBackend
+            .currentUser()
+            .project(Project.nameKey(PROJECT))
+            .test(ProjectPermission.ACCESS))
+        .thenReturn(true);
+    String eTag = before.eTag(null);
+    AsyncContext serverWide = watch(null, eTag);
+    AsyncContext forProject = watch(PROJECT, eTag);
+
+    watchers.publish(schedule.at(millis("2026-03-01T10:00")));
+
+    verify(serverWide, never()).complete();
+    verify(forProject).complete();
+    assertThat(watchers.size()).isEqualTo(1);
+  }
+
+  /** Watches the message, returns the context of the suspended request. */
+  private AsyncContext watch(String project, String eTag) throws Exception {
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    when(req.getHeader("If-None-Match")).thenReturn(eTag);
+    when(req.getParameter("project")).thenReturn(project);
+    when(req.isAsyncSupported()).thenReturn(true);
+    AsyncContext context = mock(AsyncContext.class);
+    when(req.startAsync()).thenReturn(context);
+    HttpServletResponse res = mock(HttpServletResponse.class);
+    when(res.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+    when(context.getResponse()).thenReturn(res);
+
+    servlet.doGet(req, mock(HttpServletResponse.class));
+
+    verify(context).setTimeout(anyLong());
+    verify(context).addListener(any(AsyncListener.class));
+    return context;
+  }
+
+  private static long millis(String localDateTime) {
+    return LocalDateTime.parse(localDateTime)
+        .atZone(ZoneId.systemDefault())
+        .toInstant()
+        .toEpochMilli();
+  }
+}